@@ -7,6 +7,7 @@ module Sie4j {
     exports sie.domain;
     exports sie.dto;
     exports sie.exception;
+    exports sie.ledger;
     exports sie.log;
     exports sie.io to com.fasterxml.jackson.databind;
 }
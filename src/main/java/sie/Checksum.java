@@ -1,9 +1,18 @@
 package sie;
 
-import java.nio.charset.StandardCharsets;
+import java.io.Writer;
+import java.nio.*;
+import java.nio.charset.*;
 import java.security.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 import org.apache.commons.codec.binary.*;
-import sie.domain.Document;
+import sie.domain.*;
 import sie.exception.SieException;
 
 /**
@@ -16,20 +25,181 @@ class Checksum {
     }
 
     public static String calculate(String input) {
+        MessageDigest md5 = md5();
+        md5.update(input.getBytes(StandardCharsets.UTF_8));
+        return encode(md5);
+    }
+
+    /**
+     * Calculates the checksum of the SIE content of the document, as written
+     * by {@link SieWriter#write(Document)}, without building that string.
+     *
+     * @param input the document
+     * @return the checksum
+     */
+    public static String calculate(Document input) {
+        return digest(writer -> SieStringBuilder.write(input, writer));
+    }
+
+    /**
+     * Calculates the checksums of the sections of the document. The
+     * checksum of a section in the previous calculation is used again when
+     * the section is made of the very same instances as before.
+     *
+     * @param input the document
+     * @param previous an earlier calculation, or null
+     * @return the checksums
+     */
+    static SectionChecksums sections(Document input, SectionChecksums previous) {
+        SectionChecksums.Section metaData = section(previous == null ? null : previous.metaDataSection(),
+                Arrays.asList(input.metaData(), input.optAccountingPlan().orElse(null)),
+                writer -> SieStringBuilder.writeMetaData(input, writer));
+        List<Object> objects = new ArrayList<>(input.dimensions());
+        objects.addAll(input.objects());
+        SectionChecksums.Section objectDeclarations = section(previous == null ? null : previous.objectsSection(),
+                objects,
+                writer -> SieStringBuilder.writeObjectDeclarations(input, writer));
+        SectionChecksums.Section accountingPlan = section(previous == null ? null : previous.accountingPlanSection(),
+                Arrays.asList(input.metaData().sieType(), input.optAccountingPlan().orElse(null)),
+                writer -> SieStringBuilder.writeAccountingPlan(input, writer));
+        Map<String, SectionChecksums.Section> vouchers = new TreeMap<>();
+        if (input.metaData().sieType().getNumber().equals(4)) {
+            Map<String, List<Voucher>> series = input.vouchers().stream()
+                    .collect(Collectors.groupingBy(voucher -> voucher.optSeries().orElse(""), TreeMap::new, Collectors.toList()));
+            series.forEach((name, list) -> vouchers.put(name, section(previous == null ? null : previous.voucherSection(name),
+                    new ArrayList<>(list),
+                    writer -> SieStringBuilder.writeVouchers(input, list, writer))));
+        }
+        return new SectionChecksums(metaData, objectDeclarations, accountingPlan, vouchers);
+    }
+
+    private static SectionChecksums.Section section(SectionChecksums.Section previous, List<Object> sources, Consumer<Writer> content) {
+        if (previous != null && previous.isMadeOf(sources)) {
+            return previous;
+        }
+        return new SectionChecksums.Section(sources, digest(content));
+    }
+
+    private static String digest(Consumer<Writer> content) {
+        MessageDigest md5 = md5();
+        try (DigestWriter writer = new DigestWriter(md5)) {
+            content.accept(writer);
+        }
+        return encode(md5);
+    }
+
+    public static String calculate(byte[] input) {
+        return calculate(SieReader.from(input).read());
+    }
+
+    private static MessageDigest md5() {
         try {
-            MessageDigest md5 = MessageDigest.getInstance("MD5");
-            md5.update(input.getBytes(StandardCharsets.UTF_8));
-            return Hex.encodeHexString(Base64.encodeBase64(md5.digest()), false);
+            return MessageDigest.getInstance("MD5");
         } catch (NoSuchAlgorithmException ex) {
             throw new SieException(ex);
         }
     }
 
-    public static String calculate(Document input) {
-        return calculate(SieWriter.write(input));
+    private static String encode(MessageDigest md5) {
+        return Hex.encodeHexString(Base64.encodeBase64(md5.digest()), false);
     }
 
-    public static String calculate(byte[] input) {
-        return calculate(SieReader.from(input).read());
+    /**
+     * Feeds the digest with what SieWriter.write(document) would give as
+     * UTF-8 bytes, through small buffers.
+     * <p>
+     * SieWriter encodes the content as Cp437 and decodes the bytes with the
+     * default charset, so the characters go through the same encoder, decoder
+     * and encoder here, one buffer at a time. The buffers are sized so that
+     * every step takes all of its input, but for a high surrogate or an
+     * incomplete byte sequence that is kept for the next round.
+     */
+    private static class DigestWriter extends Writer {
+
+        private static final int SIZE = 8192;
+        private static final int SPARE = 16;
+        private final MessageDigest digest;
+        private final CharsetEncoder cp437 = Entity.CHARSET.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        private final CharsetDecoder platform = Charset.defaultCharset().newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        private final CharsetEncoder utf8 = StandardCharsets.UTF_8.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        private final CharBuffer chars = CharBuffer.allocate(SIZE);
+        private final ByteBuffer encoded;
+        private final CharBuffer decoded;
+        private final ByteBuffer bytes;
+
+        private DigestWriter(MessageDigest digest) {
+            this.digest = digest;
+            int encodedSize = (int) Math.ceil(SIZE * cp437.maxBytesPerChar()) + SPARE;
+            int decodedSize = (int) Math.ceil(encodedSize * platform.maxCharsPerByte()) + SPARE;
+            this.encoded = ByteBuffer.allocate(encodedSize);
+            this.decoded = CharBuffer.allocate(decodedSize);
+            this.bytes = ByteBuffer.allocate((int) Math.ceil(decodedSize * utf8.maxBytesPerChar()) + SPARE);
+        }
+
+        @Override
+        public void write(char[] source, int offset, int length) {
+            write(CharBuffer.wrap(source, offset, length));
+        }
+
+        @Override
+        public void write(String source, int offset, int length) {
+            write(CharBuffer.wrap(source, offset, offset + length));
+        }
+
+        private void write(CharBuffer source) {
+            while (source.hasRemaining()) {
+                int length = Math.min(source.remaining(), chars.remaining());
+                chars.put(source.slice(source.position(), length));
+                source.position(source.position() + length);
+                if (!chars.hasRemaining()) {
+                    process(false);
+                }
+            }
+        }
+
+        private void process(boolean end) {
+            chars.flip();
+            check(cp437.encode(chars, encoded, end));
+            if (end) {
+                check(cp437.flush(encoded));
+            }
+            chars.compact();
+            encoded.flip();
+            check(platform.decode(encoded, decoded, end));
+            if (end) {
+                check(platform.flush(decoded));
+            }
+            encoded.compact();
+            decoded.flip();
+            check(utf8.encode(decoded, bytes, end));
+            if (end) {
+                check(utf8.flush(bytes));
+            }
+            decoded.compact();
+            bytes.flip();
+            digest.update(bytes);
+            bytes.clear();
+        }
+
+        private static void check(CoderResult result) {
+            if (result.isOverflow()) {
+                throw new IllegalStateException("Buffer overflow when calculating checksum");
+            }
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+            process(true);
+        }
     }
 }
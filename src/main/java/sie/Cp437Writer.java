@@ -0,0 +1,131 @@
+package sie;
+
+import java.io.*;
+import sie.domain.Entity;
+
+/**
+ * Encodes characters as Cp437 (PC8) straight into a stream.
+ * <p>
+ * The 256 characters of Cp437 are looked up in a table indexed by
+ * character, and ASCII, which is the same in Cp437, is copied as it is. What
+ * can not be encoded is replaced with a question mark, a surrogate pair by a
+ * single one, the same way as with {@code String.getBytes(Entity.CHARSET)}.
+ * The stream is written to a buffer of fixed size at a time.
+ *
+ * @author Håkan Lidén
+ */
+class Cp437Writer extends Writer {
+
+    private static final byte REPLACEMENT = '?';
+    private static final byte[] TABLE = table();
+    private final OutputStream target;
+    private final byte[] bytes = new byte[8192];
+    private int count;
+    private boolean highSurrogate;
+
+    Cp437Writer(OutputStream target) {
+        this.target = target;
+    }
+
+    @Override
+    public void write(char[] source, int offset, int length) throws IOException {
+        int end = offset + length;
+        for (int i = offset; i < end; i++) {
+            if (count == bytes.length) {
+                flushBuffer();
+            }
+            char c = source[i];
+            if (c < 0x80 && !highSurrogate) {
+                bytes[count++] = (byte) c;
+            } else {
+                encode(c);
+            }
+        }
+    }
+
+    @Override
+    public void write(String source, int offset, int length) throws IOException {
+        int end = offset + length;
+        for (int i = offset; i < end; i++) {
+            if (count == bytes.length) {
+                flushBuffer();
+            }
+            char c = source.charAt(i);
+            if (c < 0x80 && !highSurrogate) {
+                bytes[count++] = (byte) c;
+            } else {
+                encode(c);
+            }
+        }
+    }
+
+    @Override
+    public void write(int c) throws IOException {
+        if (count == bytes.length) {
+            flushBuffer();
+        }
+        encode((char) c);
+    }
+
+    private void encode(char c) throws IOException {
+        if (highSurrogate) {
+            highSurrogate = false;
+            bytes[count++] = REPLACEMENT;
+            if (Character.isLowSurrogate(c)) {
+                return;
+            }
+            if (count == bytes.length) {
+                flushBuffer();
+            }
+        }
+        if (Character.isHighSurrogate(c)) {
+            highSurrogate = true;
+        } else if (c < TABLE.length && (TABLE[c] != 0 || c == 0)) {
+            bytes[count++] = TABLE[c];
+        } else {
+            bytes[count++] = REPLACEMENT;
+        }
+    }
+
+    private void flushBuffer() throws IOException {
+        target.write(bytes, 0, count);
+        count = 0;
+    }
+
+    /**
+     * Writes what is buffered to the stream and flushes it. A high surrogate
+     * at the end is kept, as it may be followed by its low surrogate.
+     */
+    @Override
+    public void flush() throws IOException {
+        flushBuffer();
+        target.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (highSurrogate) {
+            highSurrogate = false;
+            if (count == bytes.length) {
+                flushBuffer();
+            }
+            bytes[count++] = REPLACEMENT;
+        }
+        flushBuffer();
+        target.close();
+    }
+
+    private static byte[] table() {
+        byte[] all = new byte[256];
+        for (int b = 0; b < 256; b++) {
+            all[b] = (byte) b;
+        }
+        String chars = new String(all, Entity.CHARSET);
+        int max = chars.chars().max().orElse(0);
+        byte[] table = new byte[max + 1];
+        for (int b = 0; b < 256; b++) {
+            table[chars.charAt(b)] = (byte) b;
+        }
+        return table;
+    }
+}
@@ -1,10 +1,17 @@
 package sie;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.*;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.exc.*;
+import java.io.*;
+import java.math.BigDecimal;
 import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
 import java.util.*;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import sie.domain.*;
 import sie.dto.*;
 import sie.exception.SieException;
@@ -18,7 +25,28 @@ class Deserializer {
     private static final ObjectMapper MAPPER = new ObjectMapper();
 
     public static Document fromJson(byte[] source) {
-        return fromJson(bytesToString(source));
+        try (JsonParser parser = MAPPER.createParser(source)) {
+            return new Deserializer().read(parser, null);
+        } catch (IOException ex) {
+            if (isInvalidUtf8(ex)) {
+                // Decoded with replacement characters, as the source always has been
+                return fromJson(new String(source, StandardCharsets.UTF_8));
+            }
+            throw new SieException("Malformed jsonString", ex);
+        } catch (DateTimeParseException ex) {
+            throw new SieException("Malformed jsonString", ex);
+        }
+    }
+
+    private static boolean isInvalidUtf8(Throwable ex) {
+        for (Throwable cause = ex; cause != null; cause = cause.getCause()) {
+            if (cause instanceof JsonParseException parseException
+                    && parseException.getOriginalMessage() != null
+                    && parseException.getOriginalMessage().startsWith("Invalid UTF-8")) {
+                return true;
+            }
+        }
+        return false;
     }
 
     public static Document fromJson(DocumentDTO dto) {
@@ -26,13 +54,307 @@ class Deserializer {
     }
 
     public static Document fromJson(String jsonString) {
-        try {
-            return new Deserializer().parse(MAPPER.readValue(jsonString, DocumentDTO.class));
-        } catch (JsonProcessingException ex) {
+        try (JsonParser parser = MAPPER.createParser(jsonString)) {
+            return new Deserializer().read(parser, null);
+        } catch (IOException | DateTimeParseException ex) {
             throw new SieException("Malformed jsonString", ex);
         }
     }
 
+    /**
+     * Reads JSON from the stream, handing each voucher to the consumer as
+     * soon as it has been read rather than keeping it in the document.
+     *
+     * @param source the JSON
+     * @param vouchers the consumer of the vouchers
+     * @return the document, without vouchers
+     */
+    public static Document fromJson(InputStream source, Consumer<Voucher> vouchers) {
+        try (JsonParser parser = MAPPER.createParser(source)) {
+            return new Deserializer().read(parser, Objects.requireNonNull(vouchers));
+        } catch (IOException | DateTimeParseException ex) {
+            throw new SieException("Malformed jsonString", ex);
+        }
+    }
+
+    /**
+     * Reads a document from JSON Lines, as written by
+     * {@link Serializer#asJsonLines(Document, OutputStream)}. The voucher
+     * lines are parsed in parallel and kept in their order.
+     *
+     * @param source the JSON Lines
+     * @return the document
+     */
+    public static Document fromJsonLines(InputStream source) {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(source, StandardCharsets.UTF_8));
+        Document header = readHeaderLine(reader);
+        List<Voucher> vouchers = reader.lines()
+                .parallel()
+                .filter(line -> !line.isBlank())
+                .map(Deserializer::fromJsonLine)
+                .toList();
+        return Document.builder()
+                .metaData(header.metaData())
+                .dimensions(header.dimensions())
+                .objects(header.objects())
+                .accountingPlan(header.optAccountingPlan().orElse(null))
+                .vouchers(vouchers)
+                .apply();
+    }
+
+    /**
+     * Streams the vouchers of JSON Lines, one line at a time. The header line
+     * is read, and checked, before the stream is returned. Closing the stream
+     * closes the source.
+     *
+     * @param source the JSON Lines
+     * @return the vouchers
+     */
+    public static Stream<Voucher> streamVouchersFromJsonLines(InputStream source) {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(source, StandardCharsets.UTF_8));
+        readHeaderLine(reader);
+        return reader.lines()
+                .filter(line -> !line.isBlank())
+                .map(Deserializer::fromJsonLine)
+                .onClose(() -> {
+                    try {
+                        reader.close();
+                    } catch (IOException ex) {
+                        throw new UncheckedIOException(ex);
+                    }
+                });
+    }
+
+    /**
+     * Reads one voucher line of JSON Lines.
+     *
+     * @param line the line
+     * @return the voucher
+     */
+    public static Voucher fromJsonLine(String line) {
+        try (JsonParser parser = MAPPER.createParser(line)) {
+            parser.nextToken();
+            return new Deserializer().readVoucher(parser);
+        } catch (IOException | DateTimeParseException ex) {
+            throw new SieException("Malformed jsonString", ex);
+        }
+    }
+
+    private static Document readHeaderLine(BufferedReader reader) {
+        try {
+            String line = reader.readLine();
+            while (line != null && line.isBlank()) {
+                line = reader.readLine();
+            }
+            if (line == null) {
+                throw new SieException("Malformed jsonString");
+            }
+            return fromJson(line);
+        } catch (IOException ex) {
+            throw new SieException(ex);
+        }
+    }
+
+    /**
+     * Reads a document token by token, the same way as binding it to a
+     * {@link DocumentDTO} and parsing that.
+     * <p>
+     * Vouchers and transactions, which make up most of a document, are built
+     * straight from the tokens. The smaller parts are bound to their DTOs, one
+     * at a time. Values that are not of the expected token type are left to
+     * the mapper, so that they are coerced the same way as before.
+     */
+    private Document read(JsonParser parser, Consumer<Voucher> sink) throws IOException {
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            throw new SieException("Malformed jsonString");
+        }
+        MetaDataDTO metaData = null;
+        AccountingPlanDTO accountingPlan = null;
+        List<AccountingDimension> dimensions = List.of();
+        List<AccountingObject> objects = List.of();
+        List<Voucher> vouchers = new ArrayList<>();
+        Consumer<Voucher> voucherSink = sink == null ? vouchers::add : sink;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.currentName();
+            parser.nextToken();
+            switch (name) {
+                case "metaData" ->
+                    metaData = MAPPER.readValue(parser, MetaDataDTO.class);
+                case "accountingPlan" ->
+                    accountingPlan = MAPPER.readValue(parser, AccountingPlanDTO.class);
+                case "dimensions" ->
+                    dimensions = readArray(parser, () -> createAccountingDimension(MAPPER.readValue(parser, AccountingDimensionDTO.class)));
+                case "objects" ->
+                    objects = readArray(parser, () -> createAccountingObject(MAPPER.readValue(parser, AccountingObjectDTO.class)));
+                case "vouchers" ->
+                    readArray(parser, () -> readVoucher(parser)).forEach(voucherSink);
+                case "voucherNumberSeries", "checksum" ->
+                    parser.skipChildren();
+                default ->
+                    throw UnrecognizedPropertyException.from(parser, DocumentDTO.class, name, List.of());
+            }
+        }
+        if (metaData == null) {
+            throw new SieException("Malformed jsonString");
+        }
+        return Document.builder()
+                .metaData(getMetaData(metaData))
+                .dimensions(dimensions)
+                .objects(objects)
+                .accountingPlan(getAccountingPlan(accountingPlan))
+                .vouchers(vouchers).apply();
+    }
+
+    private Voucher readVoucher(JsonParser parser) throws IOException {
+        if (parser.currentToken() != JsonToken.START_OBJECT) {
+            throw MismatchedInputException.from(parser, VoucherDTO.class, "Expected a voucher");
+        }
+        Voucher.Builder builder = Voucher.builder();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.currentName();
+            parser.nextToken();
+            switch (name) {
+                case "series" ->
+                    builder.series(readString(parser));
+                case "number" ->
+                    builder.number(readInteger(parser));
+                case "date" ->
+                    builder.date(readDate(parser));
+                case "text" ->
+                    builder.text(readString(parser));
+                case "registrationDate" ->
+                    builder.registrationDate(readDate(parser));
+                case "signature" ->
+                    builder.signature(readString(parser));
+                case "transactions" ->
+                    readArray(parser, () -> readTransaction(parser)).forEach(builder::addTransaction);
+                case "balanced", "diff" ->
+                    parser.skipChildren();
+                default ->
+                    throw UnrecognizedPropertyException.from(parser, VoucherDTO.class, name, List.of());
+            }
+        }
+        return builder.apply();
+    }
+
+    private Transaction readTransaction(JsonParser parser) throws IOException {
+        if (parser.currentToken() != JsonToken.START_OBJECT) {
+            throw MismatchedInputException.from(parser, TransactionDTO.class, "Expected a transaction");
+        }
+        Transaction.Builder builder = Transaction.builder();
+        List<String> costCenterIds = List.of();
+        List<String> costBearerIds = List.of();
+        List<String> projectIds = List.of();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.currentName();
+            parser.nextToken();
+            switch (name) {
+                case "accountNumber" ->
+                    builder.accountNumber(readString(parser));
+                case "amount" ->
+                    builder.amount(readDecimal(parser));
+                case "text" ->
+                    builder.text(readString(parser));
+                case "date" ->
+                    builder.date(readDate(parser));
+                case "signature" ->
+                    builder.signature(readString(parser));
+                case "quantity" ->
+                    builder.quantity(readDouble(parser));
+                case "costCenterIds" ->
+                    costCenterIds = readArray(parser, () -> readString(parser));
+                case "costBearerIds" ->
+                    costBearerIds = readArray(parser, () -> readString(parser));
+                case "projectIds" ->
+                    projectIds = readArray(parser, () -> readString(parser));
+                default ->
+                    throw UnrecognizedPropertyException.from(parser, TransactionDTO.class, name, List.of());
+            }
+        }
+        costCenterIds.forEach(num -> builder.addObjectId(Account.ObjectId.of(AccountingDimension.COST_CENTRE, num)));
+        costBearerIds.forEach(num -> builder.addObjectId(Account.ObjectId.of(AccountingDimension.COST_BEARER, num)));
+        projectIds.forEach(num -> builder.addObjectId(Account.ObjectId.of(AccountingDimension.PROJECT, num)));
+        return builder.apply();
+    }
+
+    /**
+     * Reads the elements of an array, with the parser at the start of it. A
+     * null is read as an empty array.
+     */
+    private static <T> List<T> readArray(JsonParser parser, JsonElementReader<T> reader) throws IOException {
+        if (parser.currentToken() == JsonToken.VALUE_NULL) {
+            return List.of();
+        }
+        if (parser.currentToken() != JsonToken.START_ARRAY) {
+            throw MismatchedInputException.from(parser, List.class, "Expected an array");
+        }
+        List<T> result = new ArrayList<>();
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            result.add(reader.read());
+        }
+        return result;
+    }
+
+    private static String readString(JsonParser parser) throws IOException {
+        return switch (parser.currentToken()) {
+            case VALUE_STRING ->
+                parser.getText();
+            case VALUE_NULL ->
+                null;
+            default ->
+                MAPPER.readValue(parser, String.class);
+        };
+    }
+
+    private static Integer readInteger(JsonParser parser) throws IOException {
+        return switch (parser.currentToken()) {
+            case VALUE_NUMBER_INT ->
+                parser.getIntValue();
+            case VALUE_NULL ->
+                null;
+            default ->
+                MAPPER.readValue(parser, Integer.class);
+        };
+    }
+
+    private static BigDecimal readDecimal(JsonParser parser) throws IOException {
+        return switch (parser.currentToken()) {
+            case VALUE_NUMBER_INT, VALUE_NUMBER_FLOAT ->
+                parser.getDecimalValue();
+            case VALUE_NULL ->
+                null;
+            default ->
+                MAPPER.readValue(parser, BigDecimal.class);
+        };
+    }
+
+    private static Double readDouble(JsonParser parser) throws IOException {
+        return switch (parser.currentToken()) {
+            case VALUE_NUMBER_INT, VALUE_NUMBER_FLOAT ->
+                parser.getDoubleValue();
+            case VALUE_NULL ->
+                null;
+            default ->
+                MAPPER.readValue(parser, Double.class);
+        };
+    }
+
+    /**
+     * Dates are read as by {@link sie.io.LocalDateDeserializer}.
+     */
+    private static LocalDate readDate(JsonParser parser) throws IOException {
+        if (parser.currentToken() == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        return LocalDate.parse(parser.getText());
+    }
+
+    @FunctionalInterface
+    private interface JsonElementReader<T> {
+
+        T read() throws IOException;
+    }
+
     public Document parse(DocumentDTO dto) {
         return Document.builder()
                 .metaData(getMetaData(dto.metaData()))
@@ -69,12 +391,16 @@ class Deserializer {
     }
 
     private AccountingPlan getAccountingPlan(DocumentDTO dto) {
-        if (dto.accountingPlan() == null) {
+        return getAccountingPlan(dto.accountingPlan());
+    }
+
+    private AccountingPlan getAccountingPlan(AccountingPlanDTO dto) {
+        if (dto == null) {
             return null;
         }
         return AccountingPlan.builder()
-                .accounts(dto.accountingPlan().accounts().stream().map(this::createAccount).toList())
-                .type(dto.accountingPlan().type())
+                .accounts(dto.accounts().stream().map(this::createAccount).toList())
+                .type(dto.type())
                 .apply();
     }
 
@@ -213,8 +539,4 @@ class Deserializer {
     private Boolean isEmpty(String string) {
         return string == null || string.isBlank();
     }
-
-    private static String bytesToString(byte[] input) {
-        return new String(input, StandardCharsets.UTF_8);
-    }
 }
@@ -4,6 +4,7 @@ import java.math.BigDecimal;
 import java.time.*;
 import java.time.format.DateTimeParseException;
 import java.util.*;
+import java.util.function.Consumer;
 import java.util.regex.*;
 import java.util.stream.*;
 import sie.domain.*;
@@ -25,33 +26,112 @@ class DocumentFactory {
     private static final Pattern VOUCHER_LINE_MISSING_SERIES_PATTERN = Pattern.compile("#VER\\s{2}\\d+ 20\\d{6} .*");
     private static final Pattern YEAR_PATTERN = Pattern.compile("\\d{4}");
     private static final String REPLACE_STRING = "[\"\\{\\}]";
-    private final String content;
+    private static final List<String> ACCOUNT_LINE_TAGS = List.of(
+            Entity.SRU, Entity.ACCOUNT_TYPE, Entity.UNIT,
+            Entity.OPENING_BALANCE, Entity.CLOSING_BALANCE, Entity.RESULT,
+            Entity.OBJECT_OPENING_BALANCE, Entity.OBJECT_CLOSING_BALANCE,
+            Entity.PERIODICAL_BUDGET, Entity.PERIODICAL_BALANCE);
+    private final SieLexer lexer;
     private final List<FinancialYear> years = new ArrayList<>();
     private final List<SieLog> logs = new ArrayList<>();
+    private final Map<String, Consumer<CharSequence>> handlers = new HashMap<>();
+    private final Map<String, String> firstLines = new HashMap<>();
+    private final Set<String> indentedTags = new HashSet<>();
+    private final List<DeclaredAccount> accountBuilders = new ArrayList<>();
+    private final Map<String, Map<String, List<List<String>>>> accountLines = new HashMap<>();
+    private final Set<String> declaredAccounts = new LinkedHashSet<>();
+    private final Set<String> referredAccounts = new LinkedHashSet<>();
+    private final List<AccountingDimension> dimensions = new ArrayList<>();
+    private final List<AccountingObject> objects = new ArrayList<>();
+    private final List<Voucher> vouchers = new ArrayList<>();
+    private final List<CharSequence> pendingVoucherLines = new ArrayList<>();
+    private final List<String> numberedVoucherLines = new ArrayList<>();
+    private Consumer<Voucher> voucherSink = vouchers::add;
+    private boolean streaming = false;
+    private Voucher.Builder voucherBuilder;
+    private boolean hasTransactions = false;
+    private Integer typeNumber;
     private Document document;
     private boolean conversion = true;
 
-    private DocumentFactory(String content) {
-        this.content = content.replaceAll("\r", "");
+    private DocumentFactory(SieLexer lexer) {
+        this.lexer = lexer;
+        handlers.put(Entity.ACCOUNT, line -> handleAccount(line.toString()));
+        ACCOUNT_LINE_TAGS.forEach(tag -> handlers.put(tag, line -> indexAccountLine(tag, line)));
+        handlers.put(Entity.FINANCIAL_YEAR, line -> handleFinancialYear(line.toString()));
+        handlers.put(Entity.DIMENSION, line -> handleDimension(line.toString()));
+        handlers.put(Entity.OBJECT, line -> handleObject(line.toString()));
+        handlers.put(Entity.VOUCHER, line -> handleVoucherLine(line, false));
+        handlers.put(Entity.TRANSACTION, line -> handleVoucherLine(line, true));
     }
 
     static DocumentFactory from(String content) {
-        DocumentFactory factory = new DocumentFactory(content);
-        factory.parse();
-        return factory;
+        return from(SieLexer.of(content));
     }
 
     static DocumentFactory from(byte[] source) {
-        return from(SieReader.byteArrayToString(source));
+        return from(SieReader.lexer(source));
+    }
+
+    static DocumentFactory from(SieLexer lexer) {
+        DocumentFactory factory = new DocumentFactory(lexer);
+        factory.parse();
+        return factory;
     }
 
     static DocumentFactory validation(String content) {
-        DocumentFactory factory = new DocumentFactory(content);
+        return validation(SieLexer.of(content));
+    }
+
+    static DocumentFactory validation(SieLexer lexer) {
+        DocumentFactory factory = new DocumentFactory(lexer);
         factory.setValidation();
         factory.parse();
         return factory;
     }
 
+    /**
+     * Reads the vouchers one at a time, as the lines are read from the
+     * lexer.
+     * <p>
+     * A voucher is handed out when its closing brace is read, or when the
+     * next voucher starts. Lines before the first voucher, like the header
+     * and the accounts, are read as usual, to tell the type of the file, but
+     * nothing but the vouchers is handed out. Vouchers are only read from files
+     * of type 4, as for a Document, and a critical error stops the stream.
+     *
+     * @param lexer the lexer with the SIE content
+     * @return a stream of the vouchers
+     * @throws SieException when a critical error is found
+     */
+    static Stream<Voucher> streamVouchers(SieLexer lexer) {
+        DocumentFactory factory = new DocumentFactory(lexer);
+        Deque<Voucher> ready = new ArrayDeque<>();
+        factory.voucherSink = ready::add;
+        factory.streaming = true;
+        Iterator<CharSequence> lines = lexer.lines();
+        Spliterator<Voucher> spliterator = new Spliterators.AbstractSpliterator<>(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL) {
+            private boolean finished = false;
+
+            @Override
+            public boolean tryAdvance(Consumer<? super Voucher> action) {
+                while (ready.isEmpty() && lines.hasNext()) {
+                    factory.readLine(lines.next());
+                }
+                if (ready.isEmpty() && !finished) {
+                    factory.finishVouchers();
+                    finished = true;
+                }
+                if (ready.isEmpty()) {
+                    return false;
+                }
+                action.accept(ready.poll());
+                return true;
+            }
+        };
+        return StreamSupport.stream(spliterator, false);
+    }
+
     private void setValidation() {
         this.conversion = false;
     }
@@ -86,6 +166,7 @@ class DocumentFactory {
     }
 
     private void parse() {
+        readLines();
         Document.Builder builder = Document.builder()
                 .metaData(getMetaData())
                 .accountingPlan(getAccountingPlan())
@@ -96,6 +177,67 @@ class DocumentFactory {
         checkVoucherSeriesNumberLength();
     }
 
+    /**
+     * Walks the content once, line by line, as split by the lexer.
+     * <p>
+     * The first line of every tag is kept for the meta data, and each line is
+     * handed to the handler registered for its tag. Accounts, balances,
+     * objects and vouchers are thereby built in the same pass.
+     */
+    private void readLines() {
+        lexer.forEachLine(this::readLine);
+        finishVouchers();
+    }
+
+    private void finishVouchers() {
+        if (hasTransactions && isVoucherType()) {
+            pendingVoucherLines.forEach(this::readVoucherLine);
+        }
+        pendingVoucherLines.clear();
+        if (voucherBuilder != null) {
+            voucherSink.accept(voucherBuilder.apply());
+            voucherBuilder = null;
+        }
+    }
+
+    private void readLine(CharSequence line) {
+        String tag = getTag(line);
+        if (tag != null && !tag.equals(Entity.TRANSACTION) && line.charAt(0) != '#') {
+            // Only transactions may be indented, other tags must start the line
+            indentedTags.add(tag);
+            tag = null;
+        }
+        if (tag == null) {
+            if (streaming && voucherBuilder != null && "}".contentEquals(trim(line))) {
+                voucherSink.accept(voucherBuilder.apply());
+                voucherBuilder = null;
+            }
+            return;
+        }
+        if (!firstLines.containsKey(tag)) {
+            firstLines.put(tag, line.toString());
+        }
+        Consumer<CharSequence> handler = handlers.get(tag);
+        if (handler != null) {
+            handler.accept(line);
+        }
+    }
+
+    private static String getTag(CharSequence line) {
+        int start = 0;
+        while (start < line.length() && Character.isWhitespace(line.charAt(start))) {
+            start++;
+        }
+        if (start == line.length() || line.charAt(start) != '#') {
+            return null;
+        }
+        int end = start + 1;
+        while (end < line.length() && !Character.isWhitespace(line.charAt(end))) {
+            end++;
+        }
+        return line.subSequence(start + 1, end).toString();
+    }
+
     private MetaData getMetaData() {
         MetaData.Builder builder = MetaData.builder();
         builder.program(getProgram());
@@ -128,7 +270,7 @@ class DocumentFactory {
             if (getType().equals(Document.Type.E1) || getType().equals(Document.Type.I4)) {
                 addInfo("Filer av typen " + getType() + " får inte innehålla den här taggen", Entity.PERIOD_RANGE, getLineFromTag(Entity.PERIOD_RANGE).orElse(null));
             } else {
-                builder.periodRange(LocalDate.parse(getLineAsString(Entity.PERIOD_RANGE), Entity.DATE_FORMAT));
+                builder.periodRange(SieLexer.parseDate(getLineAsString(Entity.PERIOD_RANGE)));
             }
         }
         if (hasLine(Entity.CURRENCY)) {
@@ -143,31 +285,76 @@ class DocumentFactory {
     }
 
     private List<Voucher> getVouchers() {
-        List<Voucher> vouchers = new ArrayList<>();
         if (hasLine(Entity.VOUCHER) && getType().getNumber() < 4) {
             addWarning("Filer av typen " + getType() + " får inte innehålla verifikationer", Entity.VOUCHER, null);
-            return vouchers;
+            return new ArrayList<>();
         }
-        List<String> lines = Stream.of(content.split("\n"))
-                .filter(this::isVoucherOrTransactionLine)
-                .map(this::handleMissingVoucherNumberSeries)
-                .toList();
-        Voucher.Builder builder = null;
-        if (lines.stream().collect(Collectors.joining()).contains("#" + Entity.TRANSACTION)) {
-            for (String line : lines) {
-                List<String> parts = StringUtil.getParts(line.trim());
-                builder = handleVoucher(line, builder, vouchers, parts);
-                handleTransaction(line, builder, parts);
+        if (getType().equals(Document.Type.I4)) {
+            numberedVoucherLines.forEach(line -> {
+                addInfo(Document.class, "Filer av typen " + getType() + " bör inte innehålla verifikationsnummer", Entity.VOUCHER, line);
+            });
+        }
+        return vouchers;
+    }
+
+    /**
+     * Vouchers are only read from files of type 4 that contain transactions.
+     * Until both are known, the lines are held back and read in order once
+     * they are.
+     */
+    private void handleVoucherLine(CharSequence line, boolean transaction) {
+        if (!transaction) {
+            readOrHoldVoucherLine(line.toString(), null);
+            return;
+        }
+        hasTransactions = true;
+        StringUtil.Parts parts = StringUtil.tokenize(trim(line));
+        // Only unindented transactions refer to accounts missing in the plan
+        if (line.charAt(0) == '#') {
+            String number = parts.get(1).replaceAll(REPLACE_STRING, "");
+            referredAccounts.add(number);
+            if (number.isBlank() && isConversion()) {
+                // The accounting plan, read before the vouchers, is where a missing number is first found
+                throw new MissingAccountNumberException(Entity.ACCOUNT);
             }
         }
-        if (builder != null) {
-            vouchers.add(builder.apply());
+        readOrHoldVoucherLine(line, parts);
+    }
+
+    private void readOrHoldVoucherLine(CharSequence line, StringUtil.Parts parts) {
+        if (hasLine(Entity.TYPE) && !isVoucherType()) {
+            // Will never be read
+            return;
+        }
+        if (!hasTransactions || !isVoucherType()) {
+            pendingVoucherLines.add(line);
+            return;
+        }
+        if (!pendingVoucherLines.isEmpty()) {
+            pendingVoucherLines.forEach(this::readVoucherLine);
+            pendingVoucherLines.clear();
+        }
+        if (parts == null) {
+            readVoucherLine(line);
+        } else {
+            readVoucherLine(line, parts);
         }
-        return vouchers;
     }
 
-    private boolean isVoucherOrTransactionLine(String line) {
-        return line.startsWith("#" + Entity.VOUCHER) || line.trim().startsWith("#" + Entity.TRANSACTION);
+    private void readVoucherLine(CharSequence chars) {
+        String line = handleMissingVoucherNumberSeries(chars.toString());
+        readVoucherLine(line, StringUtil.tokenize(line.trim()));
+    }
+
+    private void readVoucherLine(CharSequence line, StringUtil.Parts parts) {
+        if (startsWith(line, "#" + Entity.VOUCHER)) {
+            voucherBuilder = handleVoucher(line.toString(), voucherBuilder, parts);
+        }
+        handleTransaction(line, voucherBuilder, parts);
+    }
+
+    private boolean isVoucherType() {
+        return hasLine(Entity.TYPE) && getTypeNumber() == 4;
     }
 
     private String handleMissingVoucherNumberSeries(String line) {
@@ -177,109 +364,110 @@ class DocumentFactory {
         return line;
     }
 
-    private Voucher.Builder handleVoucher(String line, Voucher.Builder builder, List<Voucher> vouchers, List<String> parts) {
-        if (line.startsWith("#" + Entity.VOUCHER)) {
-            if (builder != null) {
-                vouchers.add(builder.apply());
-            }
-            builder = Voucher.builder();
-            builder.line(line);
-            int series = 1, voucherNum = 2, date = 3, comment = 4, registrationDate = 5, signature = 6;
-            Optional.ofNullable(parts.get(series) == null || parts.get(series).isEmpty() ? null : parts.get(series).replaceAll(REPLACE_STRING, ""))
-                    .ifPresent(builder::series);
-            if (parts.size() > voucherNum + 1) {
-                Optional<String> optVoucherNumber = Optional.ofNullable(parts.get(voucherNum) == null || parts.get(voucherNum).replaceAll(REPLACE_STRING, "").isEmpty()
-                        ? null : parts.get(voucherNum).replaceAll(REPLACE_STRING, ""));
-                if (getType().equals(Document.Type.I4) && optVoucherNumber.isPresent()) {
-                    addInfo(Document.class, "Filer av typen " + getType() + " bör inte innehålla verifikationsnummer", Entity.VOUCHER, line);
+    private Voucher.Builder handleVoucher(String line, Voucher.Builder builder, List<String> parts) {
+        if (builder != null) {
+            voucherSink.accept(builder.apply());
+        }
+        builder = Voucher.builder();
+        builder.line(line);
+        int series = 1, voucherNum = 2, date = 3, comment = 4, registrationDate = 5, signature = 6;
+        Optional.ofNullable(parts.get(series) == null || parts.get(series).isEmpty() ? null : parts.get(series).replaceAll(REPLACE_STRING, ""))
+                .ifPresent(builder::series);
+        if (parts.size() > voucherNum + 1) {
+            Optional<String> optVoucherNumber = Optional.ofNullable(parts.get(voucherNum) == null || parts.get(voucherNum).replaceAll(REPLACE_STRING, "").isEmpty()
+                    ? null : parts.get(voucherNum).replaceAll(REPLACE_STRING, ""));
+            if (optVoucherNumber.isPresent()) {
+                // Only needed for type I4, which is type 4 without balances
+                if (!streaming && !hasBalances()) {
+                    numberedVoucherLines.add(line);
                 }
-                optVoucherNumber.map(Integer::valueOf).ifPresent(builder::number);
             }
-            if (parts.size() > date + 1) {
-                String dateString = parts.get(date).replaceAll(REPLACE_STRING, "");
-                if (dateString.contains("-")) {
-                    addInfo("Datum ska anges med åtta siffror - ååååmmdd utan bindestreck", Entity.VOUCHER, line);
-                    dateString = dateString.replaceAll("-", "");
-                }
-                if (dateString.length() == 6) {
-                    addInfo("Datum ska anges med åtta siffror - ååååmmdd - inte sex: '" + dateString + "'", Entity.VOUCHER, line);
-                    dateString = "20" + dateString;
-                }
-                if (dateString.isEmpty()) {
-                    SieException ex = new MissingVoucherDateException();
-                    addCritical(ex, line);
-                }
-                try {
-                    builder.date(LocalDate.parse(dateString, Entity.DATE_FORMAT));
-                } catch (DateTimeParseException e) {
-                    SieException ex = new InvalidVoucherDateException(dateString, line, e);
-                    addCritical(ex, line);
-                }
-            } else {
-                SieException ex = new MissingVoucherDateException();
-                addCritical(ex, line);
+            optVoucherNumber.map(Integer::valueOf).ifPresent(builder::number);
+        }
+        if (parts.size() > date + 1) {
+            String dateString = parts.get(date).replaceAll(REPLACE_STRING, "");
+            if (dateString.contains("-")) {
+                addInfo("Datum ska anges med åtta siffror - ååååmmdd utan bindestreck", Entity.VOUCHER, line);
+                dateString = dateString.replaceAll("-", "");
             }
-            if (parts.size() > comment + 1) {
-                Optional.ofNullable(parts.get(comment) == null || handleQuotes(parts.get(comment)).isEmpty() ? null : handleQuotes(parts.get(comment)))
-                        .ifPresent(builder::text);
+            if (dateString.length() == 6) {
+                addInfo("Datum ska anges med åtta siffror - ååååmmdd - inte sex: '" + dateString + "'", Entity.VOUCHER, line);
+                dateString = "20" + dateString;
             }
-            if (parts.size() > registrationDate + 1) {
-                Optional.ofNullable(parts.get(registrationDate) == null || parts.get(registrationDate).isEmpty() || !DATE_PATTERN.matcher(parts.get(registrationDate)).matches() ? null : parts.get(registrationDate).replaceAll(REPLACE_STRING, ""))
-                        .map(p -> LocalDate.parse(p, Entity.DATE_FORMAT)).ifPresent(builder::registrationDate);
+            if (dateString.isEmpty()) {
+                SieException ex = new MissingVoucherDateException();
+                addCritical(ex, line);
             }
-            if (parts.size() > signature + 1) {
-                Optional.ofNullable(parts.get(signature) == null || handleQuotes(parts.get(signature)).isEmpty() ? null : handleQuotes(parts.get(signature)))
-                        .ifPresent(builder::signature);
+            try {
+                builder.date(SieLexer.parseDate(dateString));
+            } catch (DateTimeParseException e) {
+                SieException ex = new InvalidVoucherDateException(dateString, line, e);
+                addCritical(ex, line);
             }
+        } else {
+            SieException ex = new MissingVoucherDateException();
+            addCritical(ex, line);
+        }
+        if (parts.size() > comment + 1) {
+            Optional.ofNullable(parts.get(comment) == null || handleQuotes(parts.get(comment)).isEmpty() ? null : handleQuotes(parts.get(comment)))
+                    .ifPresent(builder::text);
+        }
+        if (parts.size() > registrationDate + 1) {
+            Optional.ofNullable(parts.get(registrationDate) == null || parts.get(registrationDate).isEmpty() || !DATE_PATTERN.matcher(parts.get(registrationDate)).matches() ? null : parts.get(registrationDate).replaceAll(REPLACE_STRING, ""))
+                    .map(SieLexer::parseDate).ifPresent(builder::registrationDate);
+        }
+        if (parts.size() > signature + 1) {
+            Optional.ofNullable(parts.get(signature) == null || handleQuotes(parts.get(signature)).isEmpty() ? null : handleQuotes(parts.get(signature)))
+                    .ifPresent(builder::signature);
         }
         return builder;
     }
 
-    private void handleTransaction(String line, Voucher.Builder builder, List<String> parts) throws SieException, NumberFormatException {
-        if (line.trim().startsWith("#" + Entity.TRANSACTION)) {
+    private void handleTransaction(CharSequence line, Voucher.Builder builder, StringUtil.Parts parts) throws SieException, NumberFormatException {
+        if (startsWith(trim(line), "#" + Entity.TRANSACTION)) {
             if (builder == null) {
                 throw new SieException("No current voucher builder");
             }
             if (parts.size() < 2) {
                 SieException ex = new MissingAccountNumberAndAmountException(Entity.TRANSACTION);
-                addCritical(ex, line);
+                addCritical(ex, line.toString());
             }
             Transaction.Builder tb = Transaction.builder();
             String accountNumber = parts.get(1).replaceAll(REPLACE_STRING, "");
             if (accountNumber.isEmpty()) {
                 SieException ex = new MissingAccountNumberException(Entity.TRANSACTION);
-                addCritical(ex, line);
+                addCritical(ex, line.toString());
             }
             tb.accountNumber(parts.get(1).replaceAll(REPLACE_STRING, ""));
             if (parts.size() < 4) {
-                SieException ex = new InvalidTransactionDataException(line);
-                addCritical(ex, line);
+                SieException ex = new InvalidTransactionDataException(line.toString());
+                addCritical(ex, line.toString());
             }
             Matcher matcher = OBJECT_ID_PATTERN.matcher(parts.get(2));
             while (matcher.find()) {
                 tb.addObjectId(Account.ObjectId.of(Integer.valueOf(matcher.group(2)), matcher.group(3)));
             }
             if (parts.size() < 5) {
-                SieException ex = new MissingAmountException(line);
-                addCritical(ex, line);
+                SieException ex = new MissingAmountException(line.toString());
+                addCritical(ex, line.toString());
             }
-            String amount = parts.get(3);
-            if (amount.contains(",")) {
-                addInfo("Decimaltal måste anges med punkt", Entity.TRANSACTION, line);
-                amount = amount.replaceAll(",", ".");
+            CharSequence amount = parts.field(3);
+            if (indexOf(amount, ',') >= 0) {
+                addInfo("Decimaltal måste anges med punkt", Entity.TRANSACTION, line.toString());
+                amount = amount.toString().replaceAll(",", ".");
             }
             try {
-                tb.amount(new BigDecimal(amount));
+                tb.amount(SieLexer.parseAmount(amount));
             } catch (NumberFormatException e) {
                 SieException ex = new InvalidAmountException("Strängen '" + amount + "'för balans, konto " + accountNumber + ", kan inte hanteras som belopp", e, Entity.TRANSACTION);
-                addCritical(ex, line);
+                addCritical(ex, line.toString());
             }
             if (parts.size() > 5) {
                 Optional.ofNullable(parts.get(4) == null
                         || parts.get(4).replaceAll(REPLACE_STRING, "").isEmpty()
                         || parts.get(4).length() != 8
                         ? null : parts.get(4).replaceAll(REPLACE_STRING, ""))
-                        .map(p -> LocalDate.parse(p, Entity.DATE_FORMAT)).ifPresent(tb::date);
+                        .map(SieLexer::parseDate).ifPresent(tb::date);
             }
             if (parts.size() > 6) {
                 Optional.ofNullable(parts.get(5) == null || handleQuotes(parts.get(5)).isEmpty() ? null : handleQuotes(parts.get(5)))
@@ -290,7 +478,7 @@ class DocumentFactory {
                 Optional.ofNullable(quantity == null || quantity.replaceAll(REPLACE_STRING, "").isEmpty() ? null : quantity.replaceAll(REPLACE_STRING, ""))
                         .map(part -> {
                             if (part.contains(",")) {
-                                addInfo("Decimaltal måste anges med punkt", Entity.TRANSACTION, line);
+                                addInfo("Decimaltal måste anges med punkt", Entity.TRANSACTION, line.toString());
                                 part = part.replaceAll(",", ".");
                             }
                             return part;
@@ -306,55 +494,13 @@ class DocumentFactory {
     }
 
     private AccountingPlan getAccountingPlan() {
-        List<Account> accounts = Stream.of(content.split("\n"))
-                .parallel()
-                .filter(line -> line.startsWith("#" + Entity.ACCOUNT))
-                .map(line -> {
-                    List<String> accountParts = StringUtil.getParts(line);
-                    String number = accountParts.get(1).replaceAll(REPLACE_STRING, "");
-                    if (number == null || number.isBlank()) {
-                        SieException ex = new MissingAccountNumberException(Entity.ACCOUNT);
-                        addCritical(ex, line);
-                    } else if (!NUMERIC_PATTERN.matcher(number).matches()) {
-                        SieException ex = new AccountNumberException("Kontot har inte ett numeriskt värde: " + number);
-                        addCritical(ex, line);
-                    } else if (!ACCOUNT_NUMBER_PATTERN.matcher(number).matches()) {
-                        if (number.length() <= 3) {
-                            addWarning(AccountingPlan.class, "Kontonummer ska innehålla minst fyra siffror: " + number, Entity.ACCOUNT, line);
-                        } else if (number.length() > 4 && number.length() <= 6) {
-                            addWarning(AccountingPlan.class, "Kontot har fler än fyra siffror: " + number, Entity.ACCOUNT, line);
-                        } else if (number.length() > 6) {
-                            SieException ex = new AccountNumberException("Kontot är längre än sex siffror: " + number + "\n " + line);
-                            addCritical(ex, line);
-                        }
-                    }
-                    try {
-                        Account.Builder accountBuilder = Account.builder(number);
-                        Optional.ofNullable(accountParts.size() > 2 ? accountParts.get(2) : null)
-                                .map(label -> label.replaceAll(REPLACE_STRING, "")).ifPresent(accountBuilder::label);
-                        handleSruAccountTypeAndUnit(number, accountBuilder);
-                        handleAccountBalanceAndResult(number, accountBuilder);
-                        handleAccountObjectBalance(number, accountBuilder);
-                        handleAccountPeriodicalBudget(number, accountBuilder);
-                        handleAccountPeriodicalBalance(number, accountBuilder);
-                        return accountBuilder.apply();
-                    } catch (SieException ex) {
-                        addCritical(ex, line);
-                        return null;
-                    }
-                })
-                .filter(a -> a != null)
+        List<Account> accounts = accountBuilders.stream()
+                .map(declared -> applyAccountLines(declared.number(), declared.builder()).apply())
                 .collect(Collectors.toList()); // Mutable list
-        accounts.addAll(findMissingAccountNumbers().stream().map(number -> {
+        referredAccounts.stream().filter(number -> !declaredAccounts.contains(number)).forEach(number -> {
             addInfo("Konto " + number + " saknas i kontolistan", Entity.ACCOUNT, null);
-            Account.Builder accountBuilder = Account.builder(number).label("Saknas vid import");
-            handleSruAccountTypeAndUnit(number, accountBuilder);
-            handleAccountBalanceAndResult(number, accountBuilder);
-            handleAccountObjectBalance(number, accountBuilder);
-            handleAccountPeriodicalBudget(number, accountBuilder);
-            handleAccountPeriodicalBalance(number, accountBuilder);
-            return accountBuilder.apply();
-        }).toList());
+            accounts.add(applyAccountLines(number, Account.builder(number).label("Saknas vid import")).apply());
+        });
         if (accounts.isEmpty()) {
             return null;
         }
@@ -368,192 +514,278 @@ class DocumentFactory {
         return builder.apply();
     }
 
-    private void handleSruAccountTypeAndUnit(String number, Account.Builder accountBuilder) {
-        getLineParts(number, 1, Entity.SRU, Entity.ACCOUNT_TYPE, Entity.UNIT).stream().forEach(l -> {
-            String tag = l.get(0).replaceAll("#", "");
-            if (l.size() < 4 || l.get(2).isBlank()) {
-                String line = l.get(l.size() - 1);
-                addWarning("Raden ska ha tre delar men tredje delen saknas: '" + line + "'", tag, line);
-            }
+    /**
+     * Files of type E2 and E3 may hold tens of thousands of account lines. They
+     * are indexed by account number and tag while reading and applied to
+     * their accounts once the whole file, including all #RAR lines, is read.
+     */
+    private void indexAccountLine(String tag, CharSequence line) {
+        List<String> parts = StringUtil.tokenize(line);
+        String number = parts.get(getAccountNumberIndex(tag)).replaceAll(REPLACE_STRING, "");
+        referredAccounts.add(number);
+        accountLines.computeIfAbsent(number, n -> new HashMap<>())
+                .computeIfAbsent(tag, t -> new ArrayList<>())
+                .add(parts);
+    }
+
+    private static int getAccountNumberIndex(String tag) {
+        switch (tag) {
+            case Entity.SRU:
+            case Entity.ACCOUNT_TYPE:
+            case Entity.UNIT:
+                return 1;
+            case Entity.PERIODICAL_BUDGET:
+            case Entity.PERIODICAL_BALANCE:
+                return 3;
+            default:
+                return 2;
+        }
+    }
+
+    private Account.Builder applyAccountLines(String number, Account.Builder accountBuilder) {
+        Map<String, List<List<String>>> lines = accountLines.getOrDefault(number, Map.of());
+        ACCOUNT_LINE_TAGS.forEach(tag -> lines.getOrDefault(tag, List.of()).forEach(l -> {
             switch (tag) {
                 case Entity.SRU:
-                    accountBuilder.addSruCode(l.get(2).replaceAll(REPLACE_STRING, ""));
-                    break;
+                case Entity.ACCOUNT_TYPE:
                 case Entity.UNIT:
-                    accountBuilder.unit(l.get(2).replaceAll(REPLACE_STRING, ""));
+                    handleSruAccountTypeAndUnit(accountBuilder, l);
                     break;
-                case Entity.ACCOUNT_TYPE:
-                    Account.Type.find(l.get(2).replaceAll(REPLACE_STRING, "")).ifPresent(accountBuilder::type);
+                case Entity.OPENING_BALANCE:
+                case Entity.CLOSING_BALANCE:
+                case Entity.RESULT:
+                    handleAccountBalanceAndResult(accountBuilder, l);
+                    break;
+                case Entity.OBJECT_OPENING_BALANCE:
+                case Entity.OBJECT_CLOSING_BALANCE:
+                    handleAccountObjectBalance(accountBuilder, l);
+                    break;
+                case Entity.PERIODICAL_BUDGET:
+                    handleAccountPeriodicalBudget(accountBuilder, l);
+                    break;
+                case Entity.PERIODICAL_BALANCE:
+                    handleAccountPeriodicalBalance(accountBuilder, l);
                     break;
             }
-        });
+        }));
+        return accountBuilder;
     }
 
-    private void handleAccountPeriodicalBalance(String number, Account.Builder accountBuilder) {
-        getLineParts(number, 3, Entity.PERIODICAL_BALANCE).stream().forEach(l -> {
-            YearMonth period = YearMonth.parse(l.get(2).replaceAll(REPLACE_STRING, ""), Entity.YEAR_MONTH_FORMAT);
-            // Ensure the right year index is provided
-            Integer yearIndex = findFinancialYearIndexByPeriod(period).orElse(Integer.valueOf(l.get(1)));
-            String amountString = l.get(5).replaceAll(REPLACE_STRING, "");
-            if (amountString.contains(",")) {
-                addInfo("Decimaltal måste anges med punkt", Entity.PERIODICAL_BALANCE, l.get(l.size() - 1));
-                amountString = amountString.replaceAll(",", ".");
-            }
-            PeriodicalBalance.Builder pbBuilder = PeriodicalBalance.builder()
-                    .yearIndex(yearIndex)
-                    .period(period);
-            try {
-                BigDecimal amount = new BigDecimal(amountString);
-                pbBuilder.amount(amount);
-            } catch (NumberFormatException e) {
-                SieException ex = new InvalidAmountException("Strängen '" + amountString + "' för periodbalans, konto " + number + ", kan inte hanteras som belopp\n " + l.get(l.size() - 1), e, Entity.PERIODICAL_BALANCE);
-                addCritical(ex, l.get(l.size() - 1));
-            }
-            Matcher matcher = OBJECT_ID_PATTERN.matcher(l.get(4));
-            while (matcher.find()) {
-                pbBuilder.objectId(Integer.valueOf(matcher.group(2)), matcher.group(3));
-            }
-            if (l.size() > 7) {
-                String quantity = l.get(6).replaceAll(REPLACE_STRING, "");
-                if (!quantity.isBlank()) {
-                    if (quantity.contains(",")) {
-                        addInfo("Decimaltal måste anges med punkt", Entity.PERIODICAL_BALANCE, l.stream().collect(Collectors.joining(" ")));
-                        quantity = quantity.replaceAll(",", ".");
-                    }
-                    try {
-                        pbBuilder.quantity(Double.valueOf(quantity));
-                    } catch (NumberFormatException e) {
-                        SieException ex = new InvalidQuantityException("Strängen '" + quantity + "' för kvantitet, konto " + number + ", kan inte hanteras som kvantitet\n " + l.get(l.size() - 1), e, Entity.PERIODICAL_BALANCE);
-                        addCritical(ex, l.get(l.size() - 1));
-                    }
-                }
+    private void handleAccount(String line) {
+        List<String> accountParts = StringUtil.getParts(line);
+        String number = accountParts.get(1).replaceAll(REPLACE_STRING, "");
+        if (number == null || number.isBlank()) {
+            SieException ex = new MissingAccountNumberException(Entity.ACCOUNT);
+            addCritical(ex, line);
+        } else if (!NUMERIC_PATTERN.matcher(number).matches()) {
+            SieException ex = new AccountNumberException("Kontot har inte ett numeriskt värde: " + number);
+            addCritical(ex, line);
+        } else if (!ACCOUNT_NUMBER_PATTERN.matcher(number).matches()) {
+            if (number.length() <= 3) {
+                addWarning(AccountingPlan.class, "Kontonummer ska innehålla minst fyra siffror: " + number, Entity.ACCOUNT, line);
+            } else if (number.length() > 4 && number.length() <= 6) {
+                addWarning(AccountingPlan.class, "Kontot har fler än fyra siffror: " + number, Entity.ACCOUNT, line);
+            } else if (number.length() > 6) {
+                SieException ex = new AccountNumberException("Kontot är längre än sex siffror: " + number + "\n " + line);
+                addCritical(ex, line);
             }
-            accountBuilder.addPeriodicalBalance(pbBuilder.apply());
-        });
+        }
+        try {
+            // Each #KONTO line is an account of its own, also when a number is repeated
+            Account.Builder accountBuilder = Account.builder(number);
+            accountBuilders.add(new DeclaredAccount(number, accountBuilder));
+            declaredAccounts.add(number);
+            Optional.ofNullable(accountParts.size() > 2 ? accountParts.get(2) : null)
+                    .map(label -> label.replaceAll(REPLACE_STRING, "")).ifPresent(accountBuilder::label);
+        } catch (SieException ex) {
+            addCritical(ex, line);
+        }
     }
 
-    private void handleAccountPeriodicalBudget(String number, Account.Builder accountBuilder) {
-        getLineParts(number, 3, Entity.PERIODICAL_BUDGET).stream().forEach(l -> {
-            switch (l.get(0).replaceAll("#", "")) {
-                case Entity.PERIODICAL_BUDGET:
-                    YearMonth period = YearMonth.parse(l.get(2).replaceAll(REPLACE_STRING, ""), Entity.YEAR_MONTH_FORMAT);
-                    String amountString = l.get(l.size() - 2).replaceAll(REPLACE_STRING, "");
-                    if (amountString.contains(",")) {
-                        addInfo("Decimaltal måste anges med punkt", Entity.PERIODICAL_BUDGET, l.get(l.size() - 1));
-                        amountString = amountString.replaceAll(",", ".");
-                    }
-                    try {
-                        BigDecimal amount = new BigDecimal(amountString);
-                        Integer yearIndex = findFinancialYearIndexByPeriod(period).orElse(Integer.valueOf(l.get(1).replaceAll(REPLACE_STRING, "")));
-                        PeriodicalBudget budget = PeriodicalBudget.of(l.get(l.size() - 2), yearIndex, period, amount);
-                        accountBuilder.addPeriodicalBudget(budget);
-                    } catch (NumberFormatException e) {
-                        SieException ex = new InvalidAmountException("Strängen '" + amountString + "' för periodbudget, konto " + number + ", kan inte hanteras som belopp\n " + l.get(l.size() - 1), e, Entity.PERIODICAL_BUDGET);
-                        addCritical(ex, l.get(l.size() - 1));
-                    }
-                    break;
-            }
-        });
+    private void handleSruAccountTypeAndUnit(Account.Builder accountBuilder, List<String> l) {
+        String line = l.get(l.size() - 1);
+        String tag = l.get(0).replaceAll("#", "");
+        if (l.size() < 4 || l.get(2).isBlank()) {
+            addWarning("Raden ska ha tre delar men tredje delen saknas: '" + line + "'", tag, line);
+        }
+        switch (tag) {
+            case Entity.SRU:
+                accountBuilder.addSruCode(l.get(2).replaceAll(REPLACE_STRING, ""));
+                break;
+            case Entity.UNIT:
+                accountBuilder.unit(l.get(2).replaceAll(REPLACE_STRING, ""));
+                break;
+            case Entity.ACCOUNT_TYPE:
+                Account.Type.find(l.get(2).replaceAll(REPLACE_STRING, "")).ifPresent(accountBuilder::type);
+                break;
+        }
     }
 
-    private void handleAccountObjectBalance(String number, Account.Builder accountBuilder) {
-        getLineParts(number, 2, Entity.OBJECT_OPENING_BALANCE, Entity.OBJECT_CLOSING_BALANCE).stream().forEach(l -> {
-            ObjectBalance.Builder obBuilder = ObjectBalance.builder()
-                    .yearIndex(Integer.valueOf(l.get(1).replaceAll(REPLACE_STRING, "")));
-            Matcher matcher = OBJECT_ID_PATTERN.matcher(l.get(3));
-            if (matcher.find()) {
-                String amountString = l.get(4).replaceAll(REPLACE_STRING, "");
-                if (amountString.contains(",")) {
-                    addInfo("Decimaltal måste anges med punkt", Entity.PERIODICAL_BALANCE, l.get(l.size() - 1));
-                    amountString = amountString.replaceAll(",", ".");
-                }
-                try {
-                    BigDecimal amount = new BigDecimal(amountString);
-                    obBuilder.amount(amount);
-                } catch (NumberFormatException e) {
-                    SieException ex = new InvalidAmountException("Strängen '" + amountString + "' för objektbalans, konto " + number + ", kan inte hanteras som belopp\n " + l.get(l.size() - 1), e, Entity.PERIODICAL_BALANCE);
-                    addCritical(ex, l.get(l.size() - 1));
-                }
-                obBuilder.objectId(Integer.valueOf(matcher.group(2)), matcher.group(3));
-            }
-            if (l.size() > 6) {
-                String quantity = l.get(5).replaceAll(REPLACE_STRING, "");
+    private void handleAccountPeriodicalBalance(Account.Builder accountBuilder, List<String> l) {
+        String line = l.get(l.size() - 1);
+        String number = l.get(3).replaceAll(REPLACE_STRING, "");
+        YearMonth period = YearMonth.parse(l.get(2).replaceAll(REPLACE_STRING, ""), Entity.YEAR_MONTH_FORMAT);
+        // Ensure the right year index is provided
+        Integer yearIndex = findFinancialYearIndexByPeriod(period).orElse(Integer.valueOf(l.get(1)));
+        String amountString = l.get(5).replaceAll(REPLACE_STRING, "");
+        if (amountString.contains(",")) {
+            addInfo("Decimaltal måste anges med punkt", Entity.PERIODICAL_BALANCE, line);
+            amountString = amountString.replaceAll(",", ".");
+        }
+        PeriodicalBalance.Builder pbBuilder = PeriodicalBalance.builder()
+                .yearIndex(yearIndex)
+                .period(period);
+        try {
+            BigDecimal amount = SieLexer.parseAmount(amountString);
+            pbBuilder.amount(amount);
+        } catch (NumberFormatException e) {
+            SieException ex = new InvalidAmountException("Strängen '" + amountString + "' för periodbalans, konto " + number + ", kan inte hanteras som belopp\n " + line, e, Entity.PERIODICAL_BALANCE);
+            addCritical(ex, line);
+        }
+        Matcher matcher = OBJECT_ID_PATTERN.matcher(l.get(4));
+        while (matcher.find()) {
+            pbBuilder.objectId(Integer.valueOf(matcher.group(2)), matcher.group(3));
+        }
+        if (l.size() > 7) {
+            String quantity = l.get(6).replaceAll(REPLACE_STRING, "");
+            if (!quantity.isBlank()) {
                 if (quantity.contains(",")) {
-                    addInfo("Decimaltal måste anges med punkt", Entity.PERIODICAL_BALANCE, l.get(l.size() - 1));
+                    addInfo("Decimaltal måste anges med punkt", Entity.PERIODICAL_BALANCE, l.stream().collect(Collectors.joining(" ")));
                     quantity = quantity.replaceAll(",", ".");
                 }
                 try {
-                    obBuilder.quantity(Double.valueOf(quantity));
+                    pbBuilder.quantity(Double.valueOf(quantity));
                 } catch (NumberFormatException e) {
-                    SieException ex = new InvalidQuantityException("Strängen '" + quantity + "' för kvantitet, konto " + number + ", kan inte hanteras som kvantitet\n " + l.get(l.size() - 1), e, Entity.PERIODICAL_BALANCE);
-                    addCritical(ex, l.get(l.size() - 1));
+                    SieException ex = new InvalidQuantityException("Strängen '" + quantity + "' för kvantitet, konto " + number + ", kan inte hanteras som kvantitet\n " + line, e, Entity.PERIODICAL_BALANCE);
+                    addCritical(ex, line);
                 }
             }
-            switch (l.get(0).replaceAll("#", "")) {
-                case Entity.OBJECT_OPENING_BALANCE:
-                    accountBuilder.addObjectOpeningBalance(obBuilder.apply());
-                    break;
-                case Entity.OBJECT_CLOSING_BALANCE:
-                    accountBuilder.addObjectClosingBalance(obBuilder.apply());
-                    break;
-            }
-        });
+        }
+        accountBuilder.addPeriodicalBalance(pbBuilder.apply());
+    }
+
+    private void handleAccountPeriodicalBudget(Account.Builder accountBuilder, List<String> l) {
+        String line = l.get(l.size() - 1);
+        String number = l.get(3).replaceAll(REPLACE_STRING, "");
+        YearMonth period = YearMonth.parse(l.get(2).replaceAll(REPLACE_STRING, ""), Entity.YEAR_MONTH_FORMAT);
+        String amountString = l.get(l.size() - 2).replaceAll(REPLACE_STRING, "");
+        if (amountString.contains(",")) {
+            addInfo("Decimaltal måste anges med punkt", Entity.PERIODICAL_BUDGET, line);
+            amountString = amountString.replaceAll(",", ".");
+        }
+        try {
+            BigDecimal amount = SieLexer.parseAmount(amountString);
+            Integer yearIndex = findFinancialYearIndexByPeriod(period).orElse(Integer.valueOf(l.get(1).replaceAll(REPLACE_STRING, "")));
+            PeriodicalBudget budget = PeriodicalBudget.of(l.get(l.size() - 2), yearIndex, period, amount);
+            accountBuilder.addPeriodicalBudget(budget);
+        } catch (NumberFormatException e) {
+            SieException ex = new InvalidAmountException("Strängen '" + amountString + "' för periodbudget, konto " + number + ", kan inte hanteras som belopp\n " + line, e, Entity.PERIODICAL_BUDGET);
+            addCritical(ex, line);
+        }
     }
 
-    private void handleAccountBalanceAndResult(String number, Account.Builder accountBuilder) {
-        getLineParts(number, 2, Entity.OPENING_BALANCE, Entity.CLOSING_BALANCE, Entity.RESULT).stream().forEach(l -> {
-            String tag = l.get(0).trim();
-            String amountString = l.get(3).replaceAll(REPLACE_STRING, "");
+    private void handleAccountObjectBalance(Account.Builder accountBuilder, List<String> l) {
+        String line = l.get(l.size() - 1);
+        String number = l.get(2).replaceAll(REPLACE_STRING, "");
+        ObjectBalance.Builder obBuilder = ObjectBalance.builder()
+                .yearIndex(Integer.valueOf(l.get(1).replaceAll(REPLACE_STRING, "")));
+        Matcher matcher = OBJECT_ID_PATTERN.matcher(l.get(3));
+        if (matcher.find()) {
+            String amountString = l.get(4).replaceAll(REPLACE_STRING, "");
             if (amountString.contains(",")) {
-                addInfo("Decimaltal måste anges med punkt", tag, l.get(l.size() - 1));
+                addInfo("Decimaltal måste anges med punkt", Entity.PERIODICAL_BALANCE, line);
                 amountString = amountString.replaceAll(",", ".");
             }
             try {
-                BigDecimal amount = new BigDecimal(amountString);
-                Balance balance = Balance.of(l.get(l.size() - 1), amount, Integer.valueOf(l.get(1).replaceAll(REPLACE_STRING, "")));
-                switch (tag.replaceAll("#", "")) {
-                    case Entity.OPENING_BALANCE:
-                        accountBuilder.addOpeningBalance(balance);
-                        break;
-                    case Entity.CLOSING_BALANCE:
-                        accountBuilder.addClosingBalance(balance);
-                        break;
-                    case Entity.RESULT:
-                        accountBuilder.addResult(balance);
-                        break;
-                }
+                BigDecimal amount = SieLexer.parseAmount(amountString);
+                obBuilder.amount(amount);
             } catch (NumberFormatException e) {
-                SieException ex = new InvalidAmountException("Strängen '" + amountString + "' för balans, konto " + number + ", kan inte hanteras som belopp\n " + l.get(l.size() - 1), e, tag);
-                addCritical(ex, l.get(l.size() - 1));
+                SieException ex = new InvalidAmountException("Strängen '" + amountString + "' för objektbalans, konto " + number + ", kan inte hanteras som belopp\n " + line, e, Entity.PERIODICAL_BALANCE);
+                addCritical(ex, line);
             }
-        });
+            obBuilder.objectId(Integer.valueOf(matcher.group(2)), matcher.group(3));
+        }
+        if (l.size() > 6) {
+            String quantity = l.get(5).replaceAll(REPLACE_STRING, "");
+            if (quantity.contains(",")) {
+                addInfo("Decimaltal måste anges med punkt", Entity.PERIODICAL_BALANCE, line);
+                quantity = quantity.replaceAll(",", ".");
+            }
+            try {
+                obBuilder.quantity(Double.valueOf(quantity));
+            } catch (NumberFormatException e) {
+                SieException ex = new InvalidQuantityException("Strängen '" + quantity + "' för kvantitet, konto " + number + ", kan inte hanteras som kvantitet\n " + line, e, Entity.PERIODICAL_BALANCE);
+                addCritical(ex, line);
+            }
+        }
+        switch (l.get(0).replaceAll("#", "")) {
+            case Entity.OBJECT_OPENING_BALANCE:
+                accountBuilder.addObjectOpeningBalance(obBuilder.apply());
+                break;
+            case Entity.OBJECT_CLOSING_BALANCE:
+                accountBuilder.addObjectClosingBalance(obBuilder.apply());
+                break;
+        }
+    }
+
+    private void handleAccountBalanceAndResult(Account.Builder accountBuilder, List<String> l) {
+        String line = l.get(l.size() - 1);
+        String number = l.get(2).replaceAll(REPLACE_STRING, "");
+        String tag = l.get(0).trim();
+        String amountString = l.get(3).replaceAll(REPLACE_STRING, "");
+        if (amountString.contains(",")) {
+            addInfo("Decimaltal måste anges med punkt", tag, line);
+            amountString = amountString.replaceAll(",", ".");
+        }
+        try {
+            BigDecimal amount = SieLexer.parseAmount(amountString);
+            Balance balance = Balance.of(line, amount, Integer.valueOf(l.get(1).replaceAll(REPLACE_STRING, "")));
+            switch (tag.replaceAll("#", "")) {
+                case Entity.OPENING_BALANCE:
+                    accountBuilder.addOpeningBalance(balance);
+                    break;
+                case Entity.CLOSING_BALANCE:
+                    accountBuilder.addClosingBalance(balance);
+                    break;
+                case Entity.RESULT:
+                    accountBuilder.addResult(balance);
+                    break;
+            }
+        } catch (NumberFormatException e) {
+            SieException ex = new InvalidAmountException("Strängen '" + amountString + "' för balans, konto " + number + ", kan inte hanteras som belopp\n " + line, e, tag);
+            addCritical(ex, line);
+        }
     }
 
     private List<AccountingDimension> getDimensions() {
-        List<AccountingDimension> dimList = getLinesParts(Entity.DIMENSION).stream().map(line -> {
-            Integer parentId = line.size() > 4 ? Integer.valueOf(line.get(3).replaceAll(REPLACE_STRING, "")) : null;
-            return AccountingDimension.of(line.get(line.size() - 1), Integer.valueOf(line.get(1).replaceAll(REPLACE_STRING, "")),
-                    line.get(2).replaceAll(REPLACE_STRING, ""),
-                    parentId);
-        }).toList();
-        if (!dimList.isEmpty() && getType().equals(Document.Type.E1) || getType().equals(Document.Type.E2)) {
+        if (!dimensions.isEmpty() && getType().equals(Document.Type.E1) || getType().equals(Document.Type.E2)) {
             addWarning("Filer av typen " + getType() + " får inte innehålla taggen " + Entity.DIMENSION, Entity.DIMENSION, null);
             return List.of();
         }
-        return dimList;
+        return dimensions;
+    }
+
+    private void handleDimension(String line) {
+        List<String> parts = StringUtil.getParts(line);
+        Integer parentId = parts.size() > 4 ? Integer.valueOf(parts.get(3).replaceAll(REPLACE_STRING, "")) : null;
+        dimensions.add(AccountingDimension.of(line, Integer.valueOf(parts.get(1).replaceAll(REPLACE_STRING, "")),
+                parts.get(2).replaceAll(REPLACE_STRING, ""),
+                parentId));
     }
 
     private List<AccountingObject> getObjects() {
-        List<AccountingObject> objList = getLinesParts(Entity.OBJECT).stream().map(line -> {
-            return AccountingObject.of(line.get(line.size() - 1), Integer.valueOf(line.get(1).replaceAll(REPLACE_STRING, "")),
-                    line.get(2).replaceAll(REPLACE_STRING, ""),
-                    handleQuotes(line.get(3)));
-        }).toList();
-        if (!objList.isEmpty() && getType().equals(Document.Type.E1) || getType().equals(Document.Type.E2)) {
+        if (!objects.isEmpty() && getType().equals(Document.Type.E1) || getType().equals(Document.Type.E2)) {
             addWarning("Filer av typen " + getType() + " får inte innehålla taggen " + Entity.OBJECT, Entity.OBJECT, null);
             return List.of();
         }
-        return objList;
+        return objects;
+    }
+
+    private void handleObject(String line) {
+        List<String> parts = StringUtil.getParts(line);
+        objects.add(AccountingObject.of(line, Integer.valueOf(parts.get(1).replaceAll(REPLACE_STRING, "")),
+                parts.get(2).replaceAll(REPLACE_STRING, ""),
+                handleQuotes(parts.get(3))));
     }
 
     private Program getProgram() {
@@ -586,7 +818,7 @@ class DocumentFactory {
         if (dateString == null) {
             return Optional.empty();
         }
-        LocalDate date = LocalDate.parse(dateString, Entity.DATE_FORMAT);
+        LocalDate date = SieLexer.parseDate(dateString);
         return Optional.of(Generated.of(date, sign));
     }
 
@@ -673,24 +905,21 @@ class DocumentFactory {
     }
 
     private List<FinancialYear> getFinancialYears() {
-        if (years.isEmpty()) {
-            years.addAll(getLinesParts(Entity.FINANCIAL_YEAR).stream()
-                    .map(this::createFinancialYear)
-                    .filter(fy -> fy != null)
-                    .toList());
-        }
-        if (isConversion()) {
-            IntStream.range(0, years.size() - 1).forEach(i -> {
-                LocalDate start = years.get(i).startDate();
-                LocalDate end = years.get(i + 1).endDate();
-                if (!start.equals(end.plusDays(1))) {
-                    throw new NonConsecutiveFinancialYearsException(years.get(i + 1));
-                }
-            });
-        }
         return years;
     }
 
+    private void handleFinancialYear(String line) {
+        FinancialYear year = createFinancialYear(StringUtil.getParts(line));
+        if (isConversion() && !years.isEmpty()) {
+            LocalDate start = years.get(years.size() - 1).startDate();
+            LocalDate end = year.endDate();
+            if (!start.equals(end.plusDays(1))) {
+                throw new NonConsecutiveFinancialYearsException(year);
+            }
+        }
+        years.add(year);
+    }
+
     private Optional<Integer> findFinancialYearIndexByPeriod(YearMonth period) {
         LocalDate date = LocalDate.of(period.getYear(), period.getMonth(), 5);
         return getFinancialYears().stream().filter(fy -> {
@@ -701,8 +930,8 @@ class DocumentFactory {
     private FinancialYear createFinancialYear(List<String> parts) {
         try {
             Integer index = Integer.valueOf(parts.get(1).replaceAll(REPLACE_STRING, ""));
-            LocalDate start = LocalDate.parse(parts.get(2).replaceAll(REPLACE_STRING, ""), Entity.DATE_FORMAT);
-            LocalDate end = LocalDate.parse(parts.get(3).replaceAll(REPLACE_STRING, ""), Entity.DATE_FORMAT);
+            LocalDate start = SieLexer.parseDate(parts.get(2).replaceAll(REPLACE_STRING, ""));
+            LocalDate end = SieLexer.parseDate(parts.get(3).replaceAll(REPLACE_STRING, ""));
             return FinancialYear.of(parts.get(parts.size() - 1), index, start, end);
         } catch (DateTimeParseException | NumberFormatException ex) {
             SieException sieException = new SieException("Ogiltigt räkenskapsår.", ex);
@@ -711,23 +940,6 @@ class DocumentFactory {
         }
     }
 
-    private List<String> findMissingAccountNumbers() {
-        List<String> existingAccounts = getLinesParts(Entity.ACCOUNT).stream().map(s -> s.get(1)).toList();
-        Set<String> referredAccounts = new HashSet<>();
-        getLinesParts(Entity.ACCOUNT_TYPE).forEach(s -> referredAccounts.add(s.get(1).replaceAll(REPLACE_STRING, "")));
-        getLinesParts(Entity.CLOSING_BALANCE).forEach(s -> referredAccounts.add(s.get(2).replaceAll(REPLACE_STRING, "")));
-        getLinesParts(Entity.OBJECT_CLOSING_BALANCE).forEach(s -> referredAccounts.add(s.get(2).replaceAll(REPLACE_STRING, "")));
-        getLinesParts(Entity.OBJECT_OPENING_BALANCE).forEach(s -> referredAccounts.add(s.get(2).replaceAll(REPLACE_STRING, "")));
-        getLinesParts(Entity.OPENING_BALANCE).forEach(s -> referredAccounts.add(s.get(2).replaceAll(REPLACE_STRING, "")));
-        getLinesParts(Entity.PERIODICAL_BALANCE).forEach(s -> referredAccounts.add(s.get(3).replaceAll(REPLACE_STRING, "")));
-        getLinesParts(Entity.PERIODICAL_BUDGET).forEach(s -> referredAccounts.add(s.get(3).replaceAll(REPLACE_STRING, "")));
-        getLinesParts(Entity.RESULT).forEach(s -> referredAccounts.add(s.get(2).replaceAll(REPLACE_STRING, "")));
-        getLinesParts(Entity.SRU).forEach(s -> referredAccounts.add(s.get(1).replaceAll(REPLACE_STRING, "")));
-        getLinesParts(Entity.TRANSACTION).forEach(s -> referredAccounts.add(s.get(1).replaceAll(REPLACE_STRING, "")));
-        getLinesParts(Entity.UNIT).forEach(s -> referredAccounts.add(s.get(1).replaceAll(REPLACE_STRING, "")));
-        return referredAccounts.stream().filter(s -> !existingAccounts.contains(s)).toList();
-    }
-
     private Boolean isRead() {
         List<String> lineParts = getLineParts(Entity.READ);
         return lineParts.get(1).replaceAll(REPLACE_STRING, "").equals("1");
@@ -737,21 +949,34 @@ class DocumentFactory {
         if (!hasLine(Entity.TYPE)) {
             return Document.Type.DEFAULT;
         }
-        List<String> lineParts = getLineParts(Entity.TYPE);
-        Integer value = Integer.valueOf(lineParts.get(1).replaceAll(REPLACE_STRING, "").trim());
+        Integer value = getTypeNumber();
         if (value < 4) {
             return Document.Type.valueOf("E" + value);
         }
         if (value == 4) {
-            return content.contains("#" + Entity.OPENING_BALANCE)
-                    || content.contains("#" + Entity.CLOSING_BALANCE)
-                    || content.contains("#" + Entity.RESULT)
-                    ? Document.Type.E4
-                    : Document.Type.I4;
+            return hasBalances() ? Document.Type.E4 : Document.Type.I4;
         }
         return Document.Type.DEFAULT;
     }
 
+    /**
+     * Balances anywhere in the file, also indented, make a file of type 4 an
+     * E4.
+     */
+    private boolean hasBalances() {
+        return hasLine(Entity.OPENING_BALANCE) || indentedTags.contains(Entity.OPENING_BALANCE)
+                || hasLine(Entity.CLOSING_BALANCE) || indentedTags.contains(Entity.CLOSING_BALANCE)
+                || hasLine(Entity.RESULT) || indentedTags.contains(Entity.RESULT);
+    }
+
+    private Integer getTypeNumber() {
+        if (typeNumber == null) {
+            List<String> lineParts = getLineParts(Entity.TYPE);
+            typeNumber = Integer.valueOf(lineParts.get(1).replaceAll(REPLACE_STRING, "").trim());
+        }
+        return typeNumber;
+    }
+
     private Optional<String> getComments() {
         if (hasLine(Entity.COMMENTS)) {
             List<String> lineParts = getLineParts(Entity.COMMENTS);
@@ -769,17 +994,8 @@ class DocumentFactory {
         }
     }
 
-    private List<List<String>> getLinesParts(String prefix) {
-        return Stream.of(content.split("\n"))
-                .filter(line -> !line.isEmpty())
-                .filter(line -> line.startsWith("#" + prefix))
-                .map(line -> StringUtil.getParts(line))
-                .toList();
-    }
-
     private List<String> getLineParts(String prefix) {
-        String line = content.substring(content.indexOf("#" + prefix));
-        return StringUtil.getParts(line.substring(0, line.indexOf("\n")));
+        return getLineFromTag(prefix).map(StringUtil::getParts).orElse(List.of());
     }
 
     private String getLineAsString(String prefix) {
@@ -787,10 +1003,7 @@ class DocumentFactory {
     }
 
     private Optional<String> getLineFromTag(String prefix) {
-        return Stream.of(content.split("\n"))
-                .filter(line -> !line.isBlank())
-                .filter(line -> line.startsWith("#" + prefix))
-                .findFirst();
+        return Optional.ofNullable(firstLines.get(prefix));
     }
 
     private static boolean ignorePrefix(String p) {
@@ -798,18 +1011,40 @@ class DocumentFactory {
     }
 
     private boolean hasLine(String string) {
-        return content.contains("#" + string);
+        return firstLines.containsKey(string);
     }
 
-    private List<List<String>> getLineParts(String key, int keyIndex, String... prefixes) {
-        return Stream.of(content.split("\n"))
-                .filter(line -> !line.isEmpty())
-                .filter(line -> {
-                    return Stream.of(prefixes).filter(pre -> line.startsWith("#" + pre)).findAny().isPresent();
-                })
-                .map(StringUtil::getParts)
-                .filter(line -> line.get(keyIndex).equals(key))
-                .toList();
+    private static CharSequence trim(CharSequence chars) {
+        int start = 0;
+        int end = chars.length();
+        while (start < end && chars.charAt(start) <= ' ') {
+            start++;
+        }
+        while (end > start && chars.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        return chars.subSequence(start, end);
+    }
+
+    private static boolean startsWith(CharSequence chars, String prefix) {
+        if (chars.length() < prefix.length()) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length(); i++) {
+            if (chars.charAt(i) != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int indexOf(CharSequence chars, char c) {
+        for (int i = 0; i < chars.length(); i++) {
+            if (chars.charAt(i) == c) {
+                return i;
+            }
+        }
+        return -1;
     }
 
     private String handleQuotes(String input) {
@@ -867,4 +1102,8 @@ class DocumentFactory {
         }
         return tag;
     }
+
+    private record DeclaredAccount(String number, Account.Builder builder) {
+
+    }
 }
@@ -10,6 +10,7 @@ import java.util.*;
 class FaultyCharacters {
 
     private static final Map<String, String> DEVIATIONS = new HashMap<>();
+    private static final Map<Character, Character> REPLACEMENTS = new HashMap<>();
 
     static {
         DEVIATIONS.put("α", "à");
@@ -46,6 +47,10 @@ class FaultyCharacters {
         DEVIATIONS.put("╤", "Ñ");
         DEVIATIONS.put("╓", "Ö");
         DEVIATIONS.put("▄", "Ü");
+        // Keys are used as regular expressions by replaceAll, so the escaped
+        // no-break space replaces the character itself
+        DEVIATIONS.forEach((key, value) -> REPLACEMENTS.put(key.length() == 1
+                ? key.charAt(0) : (char) Integer.parseInt(key.substring(2), 16), value.charAt(0)));
     }
 
     private FaultyCharacters() {
@@ -67,6 +72,27 @@ class FaultyCharacters {
         return FaultyCharacters.get().keySet().stream().filter(c -> string.contains(c)).findFirst().isPresent();
     }
 
+    /**
+     * Tells whether the character alone makes {@link #stringContains(String)}
+     * true.
+     *
+     * @param c the character to check
+     * @return true if the character is a faulty character
+     */
+    static boolean isFaulty(char c) {
+        return c != '\u00A0' && REPLACEMENTS.containsKey(c);
+    }
+
+    /**
+     * The character by character equivalent of {@link #replaceAll(String)}.
+     *
+     * @param c the character to replace
+     * @return the replacement, or the character itself if it is not faulty
+     */
+    static char replace(char c) {
+        return REPLACEMENTS.getOrDefault(c, c);
+    }
+
     static String replaceAll(String string) {
         String result = string;
         for (String character : FaultyCharacters.list()) {
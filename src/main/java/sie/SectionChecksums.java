@@ -0,0 +1,161 @@
+package sie;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Checksums of the sections of a document, as written in SIE format.
+ * <p>
+ * There is one checksum for the meta data, one for the object declarations,
+ * one for the accounting plan and one for the vouchers of each series. The
+ * vouchers without a series are found under the empty string. Documents that
+ * are not of type 4 have no voucher sections.
+ * <p>
+ * The checksums are kept together with the instances they were calculated
+ * from. Given to {@link sie.domain.Document.Builder#sectionChecksums}, the
+ * checksum of a section is used again as long as the new document has the
+ * same instances in it, e.g. when only a few vouchers have been given a new
+ * series or number.
+ *
+ * @author Håkan Lidén
+ */
+public final class SectionChecksums {
+
+    private final Section metaData;
+    private final Section objects;
+    private final Section accountingPlan;
+    private final Map<String, Section> vouchers;
+    private volatile String value;
+
+    SectionChecksums(Section metaData, Section objects, Section accountingPlan, Map<String, Section> vouchers) {
+        this.metaData = metaData;
+        this.objects = objects;
+        this.accountingPlan = accountingPlan;
+        this.vouchers = Collections.unmodifiableMap(new TreeMap<>(vouchers));
+    }
+
+    public String metaData() {
+        return metaData.checksum();
+    }
+
+    public String objects() {
+        return objects.checksum();
+    }
+
+    public String accountingPlan() {
+        return accountingPlan.checksum();
+    }
+
+    /**
+     * @return the checksums of the vouchers, by series
+     */
+    public Map<String, String> vouchers() {
+        return vouchers.entrySet().stream()
+                .collect(Collectors.toMap(Map.Entry::getKey, entry -> entry.getValue().checksum(), (a, b) -> a, TreeMap::new));
+    }
+
+    /**
+     * The sections combined into one checksum.
+     * <p>
+     * This is not the same value as {@link sie.domain.Document#optChecksum()},
+     * which is calculated over the whole content. It is the checksum, in the
+     * same format, of the lines
+     * <pre>
+     * #META checksum
+     * #OBJECTS checksum
+     * #PLAN checksum
+     * #VER "series" checksum
+     * </pre> with one #VER line for each series, ordered by series, and a line
+     * feed after each line.
+     *
+     * @return the combined checksum
+     */
+    public String value() {
+        String result = value;
+        if (result == null) {
+            StringBuilder builder = new StringBuilder()
+                    .append("#META ").append(metaData()).append('\n')
+                    .append("#OBJECTS ").append(objects()).append('\n')
+                    .append("#PLAN ").append(accountingPlan()).append('\n');
+            vouchers.forEach((series, section) -> builder.append("#VER \"").append(series).append("\" ").append(section.checksum()).append('\n'));
+            result = Checksum.calculate(builder.toString());
+            value = result;
+        }
+        return result;
+    }
+
+    Section metaDataSection() {
+        return metaData;
+    }
+
+    Section objectsSection() {
+        return objects;
+    }
+
+    Section accountingPlanSection() {
+        return accountingPlan;
+    }
+
+    Section voucherSection(String series) {
+        return vouchers.get(series);
+    }
+
+    @Override
+    public int hashCode() {
+        return value().hashCode();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (obj == null) {
+            return false;
+        }
+        if (getClass() != obj.getClass()) {
+            return false;
+        }
+        final SectionChecksums other = (SectionChecksums) obj;
+        return Objects.equals(this.value(), other.value());
+    }
+
+    @Override
+    public String toString() {
+        return "SectionChecksums{"
+                + "metaData=" + metaData() + ", "
+                + "objects=" + objects() + ", "
+                + "accountingPlan=" + accountingPlan() + ", "
+                + "vouchers=" + vouchers() + '}';
+    }
+
+    /**
+     * The checksum of a section and the instances it was calculated from.
+     */
+    static final class Section {
+
+        private final List<Object> sources;
+        private final String checksum;
+
+        Section(List<Object> sources, String checksum) {
+            this.sources = sources;
+            this.checksum = checksum;
+        }
+
+        String checksum() {
+            return checksum;
+        }
+
+        boolean isMadeOf(List<Object> others) {
+            if (sources.size() != others.size()) {
+                return false;
+            }
+            for (int i = 0; i < sources.size(); i++) {
+                if (sources.get(i) != others.get(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
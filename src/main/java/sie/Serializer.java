@@ -1,11 +1,15 @@
 package sie;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import java.io.InputStream;
-import sie.domain.Document;
-import sie.dto.DocumentDTO;
-import sie.exception.SieException;
+import com.fasterxml.jackson.core.*;
+import com.fasterxml.jackson.databind.*;
+import java.io.*;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import sie.domain.*;
+import sie.dto.*;
+import sie.exception.*;
 
 /**
  *
@@ -14,21 +18,202 @@ import sie.exception.SieException;
 class Serializer {
 
     private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final ObjectWriter WRITER = MAPPER.writer()
+            .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE)
+            .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
 
     private Serializer() {
     }
 
     public static String asJson(InputStream input) {
-        byte[] source = SieReader.streamToByteArray(input);
+        return asJson(input, SieReader.MAX_SIZE);
+    }
+
+    public static String asJson(InputStream input, int maxSize) {
+        byte[] source = SieReader.streamToByteArray(input, maxSize);
         return asJson(SieReader.from(source).read());
     }
 
     public static String asJson(Document document) {
-        try {
-            DocumentDTO dto = DocumentDTO.from(document);
-            return MAPPER.writeValueAsString(dto);
-        } catch (JsonProcessingException ex) {
+        StringWriter writer = new StringWriter();
+        try (JsonGenerator generator = WRITER.createGenerator(writer)) {
+            write(document, generator);
+        } catch (IOException ex) {
+            throw new SieException(ex);
+        }
+        return writer.toString();
+    }
+
+    /**
+     * Writes the document as UTF-8 encoded JSON to the stream. The stream is
+     * flushed but not closed.
+     *
+     * @param document the document
+     * @param target the stream to write to
+     */
+    public static void asJson(Document document, OutputStream target) {
+        try (JsonGenerator generator = WRITER.createGenerator(target, JsonEncoding.UTF8)) {
+            write(document, generator);
+        } catch (IOException ex) {
+            throw new SieException(ex);
+        }
+    }
+
+    /**
+     * Writes the document as JSON Lines, UTF-8 encoded, to the stream.
+     * <p>
+     * The first line is the document without its vouchers, and every line
+     * after that is one voucher, in the same format as in the full JSON. Each
+     * line ends with a line feed. The stream is flushed but not closed.
+     *
+     * @param document the document
+     * @param target the stream to write to
+     */
+    public static void asJsonLines(Document document, OutputStream target) {
+        try (JsonGenerator generator = WRITER.createGenerator(target, JsonEncoding.UTF8)) {
+            generator.setRootValueSeparator(null);
+            List<Voucher> vouchers = document.vouchers();
+            writeHeader(document, vouchers, generator);
+            writeTrailer(document, generator);
+            generator.writeEndObject();
+            generator.writeRaw('\n');
+            for (Voucher voucher : vouchers) {
+                writeVoucher(voucher, generator);
+                generator.writeRaw('\n');
+            }
+        } catch (IOException ex) {
             throw new SieException(ex);
         }
     }
+
+    /**
+     * Writes the same JSON as serializing {@link DocumentDTO#from(Document)},
+     * but walks the document rather than copying it. The vouchers and their
+     * transactions, which make up most of a document, are written token by
+     * token. The smaller parts are written through their DTOs, one at a time.
+     */
+    private static void write(Document document, JsonGenerator generator) throws IOException {
+        List<Voucher> vouchers = document.vouchers();
+        writeHeader(document, vouchers, generator);
+        generator.writeArrayFieldStart("vouchers");
+        for (Voucher voucher : vouchers) {
+            writeVoucher(voucher, generator);
+        }
+        generator.writeEndArray();
+        writeTrailer(document, generator);
+        generator.writeEndObject();
+    }
+
+    /**
+     * Starts the document object and writes the fields before the vouchers.
+     */
+    private static void writeHeader(Document document, List<Voucher> vouchers, JsonGenerator generator) throws IOException {
+        generator.writeStartObject();
+        generator.writeFieldName("metaData");
+        WRITER.writeValue(generator, MetaDataDTO.from(document.metaData()));
+        generator.writeArrayFieldStart("dimensions");
+        for (AccountingDimension dimension : document.dimensions()) {
+            WRITER.writeValue(generator, AccountingDimensionDTO.from(dimension));
+        }
+        generator.writeEndArray();
+        generator.writeArrayFieldStart("objects");
+        for (AccountingObject object : document.objects()) {
+            WRITER.writeValue(generator, AccountingObjectDTO.from(object));
+        }
+        generator.writeEndArray();
+        generator.writeArrayFieldStart("voucherNumberSeries");
+        SortedSet<String> series = new TreeSet<>();
+        vouchers.forEach(voucher -> voucher.optSeries().ifPresent(series::add));
+        for (String name : series) {
+            generator.writeString(name);
+        }
+        generator.writeEndArray();
+    }
+
+    private static void writeTrailer(Document document, JsonGenerator generator) throws IOException {
+        writeString("checksum", document.optChecksum().orElse(null), generator);
+        generator.writeFieldName("accountingPlan");
+        WRITER.writeValue(generator, document.optAccountingPlan().map(AccountingPlanDTO::from).orElse(null));
+    }
+
+    private static void writeVoucher(Voucher voucher, JsonGenerator generator) throws IOException {
+        if (voucher.date() == null) {
+            throw new MissingVoucherDateException();
+        }
+        generator.writeStartObject();
+        writeString("series", voucher.optSeries().orElse(null), generator);
+        if (voucher.optNumber().isPresent()) {
+            generator.writeNumberField("number", voucher.optNumber().get());
+        } else {
+            generator.writeNullField("number");
+        }
+        writeDate("date", voucher.date(), generator);
+        writeString("text", voucher.optText().orElse(null), generator);
+        writeDate("registrationDate", voucher.optRegistrationDate().orElse(null), generator);
+        writeString("signature", voucher.optSignature().orElse(null), generator);
+        generator.writeBooleanField("balanced", voucher.balanced());
+        writeAmount("diff", voucher.diff(), generator);
+        generator.writeArrayFieldStart("transactions");
+        for (Transaction transaction : voucher.transactions()) {
+            writeTransaction(transaction, generator);
+        }
+        generator.writeEndArray();
+        generator.writeEndObject();
+    }
+
+    private static void writeTransaction(Transaction transaction, JsonGenerator generator) throws IOException {
+        generator.writeStartObject();
+        writeString("accountNumber", transaction.accountNumber(), generator);
+        writeAmount("amount", transaction.amount(), generator);
+        writeString("text", transaction.optText().orElse(null), generator);
+        writeDate("date", transaction.date(), generator);
+        writeString("signature", transaction.getSignature().orElse(null), generator);
+        if (transaction.optQuantity().isPresent()) {
+            generator.writeNumberField("quantity", transaction.optQuantity().get());
+        } else {
+            generator.writeNullField("quantity");
+        }
+        List<Account.ObjectId> objectIds = transaction.objectIds();
+        writeObjectNumbers("costCenterIds", objectIds, AccountingDimension.COST_CENTRE, generator);
+        writeObjectNumbers("costBearerIds", objectIds, AccountingDimension.COST_BEARER, generator);
+        writeObjectNumbers("projectIds", objectIds, AccountingDimension.PROJECT, generator);
+        generator.writeEndObject();
+    }
+
+    private static void writeObjectNumbers(String name, List<Account.ObjectId> objectIds, Integer dimension, JsonGenerator generator) throws IOException {
+        generator.writeArrayFieldStart(name);
+        for (Account.ObjectId objectId : objectIds) {
+            if (objectId.dimensionId().equals(dimension)) {
+                generator.writeString(objectId.objectNumber());
+            }
+        }
+        generator.writeEndArray();
+    }
+
+    private static void writeString(String name, String value, JsonGenerator generator) throws IOException {
+        if (value == null) {
+            generator.writeNullField(name);
+        } else {
+            generator.writeStringField(name, value);
+        }
+    }
+
+    private static void writeAmount(String name, BigDecimal value, JsonGenerator generator) throws IOException {
+        if (value == null) {
+            generator.writeNullField(name);
+        } else {
+            generator.writeNumberField(name, value);
+        }
+    }
+
+    /**
+     * Dates are written as by {@link sie.io.LocalDateSerializer}.
+     */
+    private static void writeDate(String name, LocalDate value, JsonGenerator generator) throws IOException {
+        if (value == null) {
+            generator.writeNullField(name);
+        } else {
+            generator.writeStringField(name, value.format(DateTimeFormatter.ISO_DATE));
+        }
+    }
 }
@@ -2,10 +2,15 @@ package sie;
 
 import sie.dto.SieLogDTO;
 import java.io.*;
+import java.nio.channels.WritableByteChannel;
 import java.nio.charset.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.List;
+import java.util.function.Consumer;
 import java.util.stream.*;
 import sie.domain.Document;
+import sie.domain.Voucher;
 import sie.dto.*;
 import sie.exception.SieException;
 import sie.validate.DocumentValidator;
@@ -64,6 +69,19 @@ public class Sie4j {
         return Serializer.asJson(input);
     }
 
+    /**
+     * Convert SIE data to JSON, reading at most maxSize bytes.
+     *
+     * @param input InputStream
+     * @param maxSize int
+     * @return
+     * @throws sie.exception.SourceTooLargeException if the input is larger
+     * than maxSize
+     */
+    public static String asJson(InputStream input, int maxSize) {
+        return Serializer.asJson(input, maxSize);
+    }
+
     /**
      * Convert Document to JSON
      *
@@ -74,6 +92,79 @@ public class Sie4j {
         return Serializer.asJson(input);
     }
 
+    /**
+     * Writes Document as UTF-8 encoded JSON to the stream.
+     * <p>
+     * The document is written as it is walked, without first being copied
+     * into DTOs or a string. The stream is flushed but not closed.
+     *
+     * @param input Document
+     * @param target OutputStream
+     */
+    public static void asJson(Document input, OutputStream target) {
+        Serializer.asJson(input, target);
+    }
+
+    /**
+     * Writes Document as UTF-8 encoded JSON Lines to the stream.
+     * <p>
+     * The first line holds the Document without its vouchers: meta data,
+     * dimensions, objects, voucher number series, checksum and accounting
+     * plan. Each line after that holds one voucher, as in the JSON from
+     * {@link #asJson(Document)}. The lines can be split between workers and
+     * read one by one with {@link #voucherFromJsonLine(String)}. The stream is
+     * flushed but not closed.
+     *
+     * @param input Document
+     * @param target OutputStream
+     */
+    public static void asJsonLines(Document input, OutputStream target) {
+        Serializer.asJsonLines(input, target);
+    }
+
+    /**
+     * Generate Document from JSON Lines, as written by
+     * {@link #asJsonLines(Document, OutputStream)}.
+     * <p>
+     * The voucher lines are parsed in parallel.
+     *
+     * @param input InputStream
+     * @return
+     */
+    public static Document fromJsonLines(InputStream input) {
+        if (input == null) {
+            throw new SieException("Källan får inte vara null");
+        }
+        return Deserializer.fromJsonLines(input);
+    }
+
+    /**
+     * Streams the vouchers of JSON Lines, as written by
+     * {@link #asJsonLines(Document, OutputStream)}.
+     * <p>
+     * The stream reads one line at a time and may be made parallel. It should
+     * be closed after use, which closes the input.
+     *
+     * @param input InputStream
+     * @return
+     */
+    public static Stream<Voucher> streamVouchersFromJsonLines(InputStream input) {
+        if (input == null) {
+            throw new SieException("Källan får inte vara null");
+        }
+        return Deserializer.streamVouchersFromJsonLines(input);
+    }
+
+    /**
+     * Reads a single voucher line of JSON Lines.
+     *
+     * @param line String
+     * @return
+     */
+    public static Voucher voucherFromJsonLine(String line) {
+        return Deserializer.fromJsonLine(line);
+    }
+
     /**
      * Generate Document from a JSON InputStream.
      *
@@ -84,6 +175,40 @@ public class Sie4j {
         return Deserializer.fromJson(SieReader.streamToByteArray(input));
     }
 
+    /**
+     * Generate Document from a JSON InputStream, reading at most maxSize
+     * bytes.
+     *
+     * @param input InputStream
+     * @param maxSize int
+     * @return
+     * @throws sie.exception.SourceTooLargeException if the input is larger
+     * than maxSize
+     */
+    public static Document fromJson(InputStream input, int maxSize) {
+        return Deserializer.fromJson(SieReader.streamToByteArray(input, maxSize));
+    }
+
+    /**
+     * Generate Document from a JSON InputStream, handing the vouchers to the
+     * consumer one at a time.
+     * <p>
+     * The JSON is read token by token straight from the stream. Each voucher
+     * is handed to the consumer as soon as it has been read, and is not kept
+     * in the Document returned, so memory use does not grow with the number
+     * of vouchers.
+     *
+     * @param input InputStream
+     * @param vouchers Consumer of the vouchers, in the order they are read
+     * @return Document without vouchers
+     */
+    public static Document fromJson(InputStream input, Consumer<Voucher> vouchers) {
+        if (input == null) {
+            throw new SieException("Källan får inte vara null");
+        }
+        return Deserializer.fromJson(input, vouchers);
+    }
+
     /**
      * Generate Document from a JSON String.
      *
@@ -114,6 +239,16 @@ public class Sie4j {
         return SieReader.from(input);
     }
 
+    /**
+     * Create a DataReader from a SIE file, mapped into memory.
+     *
+     * @param input Path
+     * @return
+     */
+    public static DataReader readerFromSie(Path input) {
+        return SieReader.from(input);
+    }
+
     /**
      * Create a DataReader from SIE as a byte array.
      * <p>
@@ -166,6 +301,23 @@ public class Sie4j {
         return SieReader.from(input).read();
     }
 
+    /**
+     * Generate Document from a SIE byte array, through the cache.
+     * <p>
+     * Content that has been read before is taken from the cache, without
+     * being parsed again.
+     *
+     * @param input byte[]
+     * @param cache SieCache
+     * @return
+     */
+    public static Document fromSie(byte[] input, SieCache cache) {
+        if (input == null) {
+            throw new SieException("Källan får inte vara null");
+        }
+        return cache.document(input, Sie4j::fromSie);
+    }
+
     /**
      * Generate Document from a SIE String.
      *
@@ -176,6 +328,20 @@ public class Sie4j {
         return fromSie(SieReader.streamToByteArray(input));
     }
 
+    /**
+     * Generate Document from a SIE InputStream, reading at most maxSize
+     * bytes.
+     *
+     * @param input InputStream
+     * @param maxSize int
+     * @return
+     * @throws sie.exception.SourceTooLargeException if the input is larger
+     * than maxSize
+     */
+    public static Document fromSie(InputStream input, int maxSize) {
+        return fromSie(SieReader.streamToByteArray(input, maxSize));
+    }
+
     /**
      * Generate Document from a SIE File.
      *
@@ -183,11 +349,87 @@ public class Sie4j {
      * @return
      */
     public static Document fromSie(File input) {
-        try {
-            return fromSie(new FileInputStream(input));
-        } catch (FileNotFoundException ex) {
-            throw new SieException(ex);
-        }
+        return fromSie(input.toPath());
+    }
+
+    /**
+     * Generate Document from a SIE file.
+     * <p>
+     * The file is mapped into memory and parsed from there, without copying
+     * its bytes onto the heap.
+     *
+     * @param input Path
+     * @return
+     */
+    public static Document fromSie(Path input) {
+        return SieReader.from(input).read();
+    }
+
+    /**
+     * Stream the vouchers from a SIE byte array.
+     * <p>
+     * The vouchers are read one at a time as the stream is consumed, without
+     * building a Document. Only files of type 4 contain vouchers. The other
+     * lines, like the header and the accounts, are read to tell the type of
+     * the file but are not handed out; use {@link #fromSie(byte[])} for them.
+     *
+     * @param input byte[]
+     * @return
+     * @throws SieException when a critical error is found, as the stream is
+     * consumed
+     */
+    public static Stream<Voucher> streamVouchers(byte[] input) {
+        return DocumentFactory.streamVouchers(SieReader.lexer(input));
+    }
+
+    /**
+     * Stream the vouchers from a SIE InputStream.
+     * <p>
+     * The whole input is read into memory before the first voucher, since the
+     * character set is detected over all of the content. Use
+     * {@link #streamVouchers(Path)} to stream a file without holding it on
+     * the heap.
+     *
+     * @see #streamVouchers(byte[])
+     * @param input InputStream
+     * @return
+     */
+    public static Stream<Voucher> streamVouchers(InputStream input) {
+        return streamVouchers(SieReader.streamToByteArray(input));
+    }
+
+    /**
+     * Stream the vouchers from a SIE InputStream, reading at most maxSize
+     * bytes.
+     * <p>
+     * The whole input is read into memory before the first voucher, since the
+     * character set is detected over all of the content. Use
+     * {@link #streamVouchers(Path)} to stream a file without holding it on
+     * the heap.
+     *
+     * @see #streamVouchers(byte[])
+     * @param input InputStream
+     * @param maxSize int
+     * @return
+     * @throws sie.exception.SourceTooLargeException if the input is larger
+     * than maxSize
+     */
+    public static Stream<Voucher> streamVouchers(InputStream input, int maxSize) {
+        return streamVouchers(SieReader.streamToByteArray(input, maxSize));
+    }
+
+    /**
+     * Stream the vouchers from a SIE file, mapped into memory.
+     * <p>
+     * Neither the file nor the vouchers are held on the heap, so the memory
+     * use does not grow with the size of the file.
+     *
+     * @see #streamVouchers(byte[])
+     * @param input Path
+     * @return
+     */
+    public static Stream<Voucher> streamVouchers(Path input) {
+        return DocumentFactory.streamVouchers(SieReader.lexer(input));
     }
 
     /**
@@ -240,10 +482,198 @@ public class Sie4j {
         return SieWriter.write(input, target, charset);
     }
 
+    /**
+     * Writes SIE content to the stream, UTF-8 encoded.
+     * <p>
+     * The content is encoded and written a buffer at a time, so memory use
+     * does not grow with the size of the document. The stream is flushed but
+     * not closed.
+     *
+     * @param input Document
+     * @param target Target stream
+     */
+    public static void asSie(Document input, OutputStream target) {
+        asSie(input, target, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Writes SIE content to the stream, encoded according to the charset
+     * parameter.
+     *
+     * @see #asSie(Document, OutputStream)
+     * @param input Document
+     * @param target Target stream
+     * @param charset Charset for the content
+     */
+    public static void asSie(Document input, OutputStream target, Charset charset) {
+        SieWriter.write(input, target, charset);
+    }
+
+    /**
+     * Writes SIE content to the stream, with the vouchers optionally rendered
+     * in parallel.
+     * <p>
+     * In parallel, chunks of vouchers are rendered in the common fork-join
+     * pool and written in their original order. The content is the same as
+     * when written on a single thread. This is worth it for large type 4
+     * documents.
+     *
+     * @see #asSie(Document, OutputStream)
+     * @param input Document
+     * @param target Target stream
+     * @param charset Charset for the content
+     * @param parallel true to render the vouchers in parallel
+     */
+    public static void asSie(Document input, OutputStream target, Charset charset, boolean parallel) {
+        SieWriter.write(input, target, charset, parallel);
+    }
+
+    /**
+     * Writes SIE content to the channel, encoded according to the charset
+     * parameter.
+     *
+     * @see #asSie(Document, OutputStream)
+     * @param input Document
+     * @param target Target channel
+     * @param charset Charset for the content
+     */
+    public static void asSie(Document input, WritableByteChannel target, Charset charset) {
+        SieWriter.write(input, target, charset);
+    }
+
+    /**
+     * Writes SIE content to the writer, which decides the encoding.
+     *
+     * @see #asSie(Document, OutputStream)
+     * @param input Document
+     * @param target Target writer
+     */
+    public static void asSie(Document input, Writer target) {
+        SieWriter.write(input, target);
+    }
+
+    /**
+     * Writes SIE content to the writer, with the vouchers optionally rendered
+     * in parallel.
+     *
+     * @see #asSie(Document, OutputStream, Charset, boolean)
+     * @param input Document
+     * @param target Target writer
+     * @param parallel true to render the vouchers in parallel
+     */
+    public static void asSie(Document input, Writer target, boolean parallel) {
+        SieWriter.write(input, target, parallel);
+    }
+
+    /**
+     * Produces a binary snapshot of the document.
+     * <p>
+     * A snapshot is a compact, versioned form of the document that is much
+     * faster to load than SIE or JSON, meant for caching parsed documents.
+     * The source lines of the document are not kept.
+     *
+     * @param input Document
+     * @return the snapshot
+     */
+    public static byte[] asSnapshot(Document input) {
+        return Snapshot.write(input);
+    }
+
+    /**
+     * Writes a binary snapshot of the document to the stream. The stream is
+     * flushed but not closed.
+     *
+     * @see #asSnapshot(Document)
+     * @param input Document
+     * @param target Target stream
+     */
+    public static void asSnapshot(Document input, OutputStream target) {
+        Snapshot.write(input, target);
+    }
+
+    /**
+     * Writes a binary snapshot of the document to the file.
+     *
+     * @see #asSnapshot(Document)
+     * @param input Document
+     * @param target Target file
+     * @return the target file
+     */
+    public static Path asSnapshot(Document input, Path target) {
+        try {
+            return Files.write(target, Snapshot.write(input));
+        } catch (IOException ex) {
+            throw new SieException(ex);
+        }
+    }
+
+    /**
+     * Loads a document from a binary snapshot.
+     *
+     * @see #asSnapshot(Document)
+     * @param input byte[]
+     * @return
+     * @throws sie.exception.InvalidSnapshotException if the input is not a
+     * snapshot, or one of an unsupported version
+     */
+    public static Document fromSnapshot(byte[] input) {
+        if (input == null) {
+            throw new SieException("Källan får inte vara null");
+        }
+        return Snapshot.read(input);
+    }
+
+    /**
+     * Loads a document from a binary snapshot in the stream. The stream is
+     * read to its end but not closed.
+     *
+     * @see #fromSnapshot(byte[])
+     * @param input InputStream
+     * @return
+     */
+    public static Document fromSnapshot(InputStream input) {
+        if (input == null) {
+            throw new SieException("Källan får inte vara null");
+        }
+        try {
+            return Snapshot.read(input.readAllBytes());
+        } catch (IOException ex) {
+            throw new SieException(ex);
+        }
+    }
+
+    /**
+     * Loads a document from a binary snapshot file.
+     *
+     * @see #fromSnapshot(byte[])
+     * @param input Path
+     * @return
+     */
+    public static Document fromSnapshot(Path input) {
+        try {
+            return Snapshot.read(Files.readAllBytes(input));
+        } catch (IOException ex) {
+            throw new SieException(ex);
+        }
+    }
+
     public static String calculateChecksum(Document input) {
         return Checksum.calculate(input);
     }
 
+    /**
+     * Calculates a checksum for each section of the document.
+     *
+     * @see SectionChecksums
+     * @param input Document
+     * @param previous Section checksums of an earlier version of the document,
+     * or null
+     * @return SectionChecksums
+     */
+    public static SectionChecksums calculateSectionChecksums(Document input, SectionChecksums previous) {
+        return Checksum.sections(input, previous);
+    }
+
     public static ValidationResultDTO validate(DataReader reader) {
         try {
             List<SieLogDTO> logs = reader.validate().getLogs().stream().map(SieLogDTO::from).toList();
@@ -288,6 +718,23 @@ public class Sie4j {
         }
     }
 
+    /**
+     * Validates SIE content through the cache.
+     * <p>
+     * Content that has been validated before is taken from the cache, without
+     * being parsed and validated again.
+     *
+     * @param input byte[]
+     * @param cache SieCache
+     * @return
+     */
+    public static ValidationResultDTO validate(byte[] input, SieCache cache) {
+        if (input == null) {
+            throw new SieException("Källan får inte vara null");
+        }
+        return cache.validation(input, Sie4j::validate);
+    }
+
     public static ValidationResultDTO validateJson(InputStream input) {
         try {
             Document document = Sie4j.fromJson(input);
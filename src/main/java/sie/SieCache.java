@@ -0,0 +1,279 @@
+package sie;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.nio.file.*;
+import java.security.*;
+import java.util.*;
+import java.util.function.Function;
+import org.apache.commons.codec.binary.Hex;
+import sie.domain.Document;
+import sie.dto.ValidationResultDTO;
+import sie.exception.InvalidSnapshotException;
+import sie.exception.SieException;
+
+/**
+ * A cache of parsed documents and validation results, keyed by the content
+ * of the SIE input.
+ * <p>
+ * The key is the SHA-256 hash of the raw bytes, so the same content gives the
+ * same result whatever the file is called. Entries are held in memory, least
+ * recently used first out, bounded by the number of entries and the sum of
+ * the sizes of their inputs. With a directory, documents are also kept there
+ * as snapshots and validation results as JSON, and outlive the cache. The
+ * cache never removes anything from the directory: entries of content that
+ * is no longer read, and temporary files left by a write that failed, stay
+ * until they are removed by other means.
+ * <p>
+ * The same instances are handed out for repeated input, and should not be
+ * changed. Only documents that could be read are cached. A document loaded
+ * from the directory holds no source lines.
+ * <p>
+ * Use with {@link Sie4j#fromSie(byte[], SieCache)} and
+ * {@link Sie4j#validate(byte[], SieCache)}. The cache is safe to share
+ * between threads.
+ *
+ * @author Håkan Lidén
+ */
+public final class SieCache {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final String SNAPSHOT = ".snapshot";
+    private static final String VALIDATION = ".validation.json";
+    private final int maxEntries;
+    private final long maxBytes;
+    private final Path directory;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytes;
+
+    private SieCache(int maxEntries, long maxBytes, Path directory) {
+        this.maxEntries = maxEntries;
+        this.maxBytes = maxBytes;
+        this.directory = directory;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * @return the number of entries in memory
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Removes all entries from memory. The directory is left as it is.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        bytes = 0;
+    }
+
+    Document document(byte[] input, Function<byte[], Document> reader) {
+        String key = key(input);
+        Entry entry = get(key);
+        if (entry != null && entry.document != null) {
+            return entry.document;
+        }
+        Document document = load(key + SNAPSHOT, Snapshot::read);
+        if (document == null) {
+            document = reader.apply(input);
+            store(key + SNAPSHOT, snapshot(document));
+        }
+        put(key, input.length, document, null);
+        return document;
+    }
+
+    ValidationResultDTO validation(byte[] input, Function<byte[], ValidationResultDTO> validator) {
+        String key = key(input);
+        Entry entry = get(key);
+        if (entry != null && entry.validation != null) {
+            return entry.validation;
+        }
+        ValidationResultDTO validation = load(key + VALIDATION, bytes -> {
+            try {
+                return MAPPER.readValue(bytes, ValidationResultDTO.class);
+            } catch (IOException ex) {
+                throw new SieException(ex);
+            }
+        });
+        if (validation == null) {
+            validation = validator.apply(input);
+            try {
+                store(key + VALIDATION, MAPPER.writeValueAsBytes(validation));
+            } catch (IOException ex) {
+                throw new SieException(ex);
+            }
+        }
+        put(key, input.length, null, validation);
+        return validation;
+    }
+
+    private synchronized Entry get(String key) {
+        return entries.get(key);
+    }
+
+    private synchronized void put(String key, long size, Document document, ValidationResultDTO validation) {
+        if (size > maxBytes) {
+            return;
+        }
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            entry = new Entry(size);
+            entries.put(key, entry);
+            bytes += size;
+        }
+        if (document != null) {
+            entry.document = document;
+        }
+        if (validation != null) {
+            entry.validation = validation;
+        }
+        Iterator<Entry> eldest = entries.values().iterator();
+        while (!entries.isEmpty() && (entries.size() > maxEntries || bytes > maxBytes)) {
+            bytes -= eldest.next().size;
+            eldest.remove();
+        }
+    }
+
+    /**
+     * A file that cannot be read, or is not what it should be, is taken as
+     * missing and is written anew.
+     */
+    private <T> T load(String name, Function<byte[], T> reader) {
+        if (directory == null) {
+            return null;
+        }
+        Path file = directory.resolve(name);
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+        try {
+            return reader.apply(Files.readAllBytes(file));
+        } catch (IOException | RuntimeException ex) {
+            return null;
+        }
+    }
+
+    /**
+     * A document that cannot be made into a snapshot is only held in memory.
+     */
+    private static byte[] snapshot(Document document) {
+        try {
+            return Snapshot.write(document);
+        } catch (InvalidSnapshotException ex) {
+            return null;
+        }
+    }
+
+    /**
+     * The file is written next to its final name and moved in place, so that
+     * no other reader sees half a file. A file that cannot be written is left
+     * out, the cache in memory still holds the entry.
+     */
+    private void store(String name, byte[] content) {
+        if (directory == null || content == null) {
+            return;
+        }
+        Path temporary = null;
+        try {
+            Files.createDirectories(directory);
+            temporary = Files.createTempFile(directory, name, ".tmp");
+            Files.write(temporary, content);
+            Files.move(temporary, directory.resolve(name), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException ex) {
+            delete(temporary);
+        }
+    }
+
+    private static void delete(Path file) {
+        if (file == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException ex) {
+            // A leftover temporary file is never read, it only takes up space.
+        }
+    }
+
+    private static String key(byte[] input) {
+        try {
+            return Hex.encodeHexString(MessageDigest.getInstance("SHA-256").digest(input));
+        } catch (NoSuchAlgorithmException ex) {
+            throw new SieException(ex);
+        }
+    }
+
+    private static final class Entry {
+
+        private final long size;
+        private Document document;
+        private ValidationResultDTO validation;
+
+        private Entry(long size) {
+            this.size = size;
+        }
+    }
+
+    public static class Builder {
+
+        private int maxEntries = 100;
+        private long maxBytes = 256L * 1024 * 1024;
+        private Path directory;
+
+        private Builder() {
+        }
+
+        /**
+         * The largest number of entries to hold in memory. Zero holds none.
+         * Default is 100.
+         *
+         * @param maxEntries int
+         * @return the builder
+         * @throws IllegalArgumentException if maxEntries is below zero
+         */
+        public Builder maxEntries(int maxEntries) {
+            if (maxEntries < 0) {
+                throw new IllegalArgumentException("maxEntries: " + maxEntries);
+            }
+            this.maxEntries = maxEntries;
+            return this;
+        }
+
+        /**
+         * The largest sum of the sizes of the inputs of the entries held in
+         * memory. Input larger than this is not held in memory. Default is
+         * 256 MiB.
+         *
+         * @param maxBytes long
+         * @return the builder
+         * @throws IllegalArgumentException if maxBytes is below zero
+         */
+        public Builder maxBytes(long maxBytes) {
+            if (maxBytes < 0) {
+                throw new IllegalArgumentException("maxBytes: " + maxBytes);
+            }
+            this.maxBytes = maxBytes;
+            return this;
+        }
+
+        /**
+         * A directory to keep entries in, as well as in memory. Default is
+         * none.
+         *
+         * @param directory Path
+         * @return the builder
+         */
+        public Builder directory(Path directory) {
+            this.directory = directory;
+            return this;
+        }
+
+        public SieCache apply() {
+            return new SieCache(maxEntries, maxBytes, directory);
+        }
+    }
+}
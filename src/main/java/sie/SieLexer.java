@@ -0,0 +1,385 @@
+package sie;
+
+import java.math.BigDecimal;
+import java.nio.*;
+import java.nio.charset.*;
+import java.time.*;
+import java.util.*;
+import java.util.function.Consumer;
+import sie.domain.Entity;
+
+/**
+ * Splits SIE content into lines straight from its bytes.
+ * <p>
+ * The character set is detected the same way as it always has been - Cp437,
+ * UTF-8 if the content holds box drawing characters and ISO-8859-1 if it is
+ * not proper UTF-8 - but by looking at the bytes rather than decoding the
+ * whole content up to three times. Line breaks are found on the bytes as
+ * well. For the single byte character sets a line is a view of its bytes,
+ * decoded char by char when read, so only the parts of a line that are asked
+ * for become strings.
+ *
+ * @author Håkan Lidén
+ */
+class SieLexer {
+
+    private static final char[] CP437 = table(Entity.CHARSET);
+    private static final char[] ISO_8859_1 = table(StandardCharsets.ISO_8859_1);
+    private static final boolean[] CP437_BOX_DRAWING = boxDrawing();
+    private static final byte[] ESCAPED_NO_BREAK_SPACE = "\\u00A0".getBytes(StandardCharsets.US_ASCII);
+    private final ByteBuffer source;
+    private final String text;
+    private final int start;
+    private final int end;
+    private final Charset charset;
+    private final char[] table;
+    private final boolean faulty;
+
+    private SieLexer(ByteBuffer source, Charset charset, boolean faulty) {
+        this.source = source;
+        this.text = null;
+        this.charset = charset;
+        this.faulty = faulty;
+        this.table = charset.equals(StandardCharsets.UTF_8) ? null : table(charset, faulty);
+        int first = source.position();
+        int last = source.limit();
+        while (first < last && charAt(first) <= ' ') {
+            first++;
+        }
+        while (last > first && charAt(last - 1) <= ' ') {
+            last--;
+        }
+        this.start = first;
+        this.end = last;
+    }
+
+    private SieLexer(String text) {
+        this.source = null;
+        this.text = text;
+        this.charset = StandardCharsets.UTF_16;
+        this.table = null;
+        this.faulty = false;
+        this.start = 0;
+        this.end = text.length();
+    }
+
+    static SieLexer of(byte[] source) {
+        return of(ByteBuffer.wrap(source));
+    }
+
+    static SieLexer of(ByteBuffer source) {
+        boolean boxDrawing = false;
+        for (int i = source.position(); i < source.limit() && !boxDrawing; i++) {
+            boxDrawing = CP437_BOX_DRAWING[source.get(i) & 0xFF];
+        }
+        if (!boxDrawing) {
+            // Every byte is a character in Cp437, so there is no replacement character
+            return new SieLexer(source, Entity.CHARSET, hasFaultyCharacters(source, CP437));
+        }
+        CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPORT)
+                .onUnmappableCharacter(CodingErrorAction.REPORT);
+        ByteBuffer in = source.duplicate();
+        CharBuffer out = CharBuffer.allocate(8192);
+        boolean faulty = false;
+        while (true) {
+            CoderResult result = decoder.decode(in, out, true);
+            if (result.isOverflow() || result.isUnderflow()) {
+                out.flip();
+                while (out.hasRemaining()) {
+                    char c = out.get();
+                    if (c == '�') {
+                        return new SieLexer(source, StandardCharsets.ISO_8859_1, hasFaultyCharacters(source, ISO_8859_1));
+                    }
+                    faulty = faulty || FaultyCharacters.isFaulty(c);
+                }
+                out.clear();
+            }
+            if (result.isError()) {
+                return new SieLexer(source, StandardCharsets.ISO_8859_1, hasFaultyCharacters(source, ISO_8859_1));
+            }
+            if (result.isUnderflow()) {
+                break;
+            }
+        }
+        return new SieLexer(source, StandardCharsets.UTF_8, faulty || hasEscapedNoBreakSpace(source));
+    }
+
+    /**
+     * For content that already is a string. Lines are split on line feeds
+     * and carriage returns are dropped.
+     *
+     * @param text the content
+     * @return a lexer for the content
+     */
+    static SieLexer of(String text) {
+        return new SieLexer(text);
+    }
+
+    Charset charset() {
+        return charset;
+    }
+
+    /**
+     * Hands every line of the content, in order, to the action.
+     *
+     * @param action the action to perform on each line
+     */
+    void forEachLine(Consumer<CharSequence> action) {
+        lines().forEachRemaining(action);
+    }
+
+    /**
+     * @return an iterator over the lines of the content, reading one line at
+     * a time
+     */
+    Iterator<CharSequence> lines() {
+        return new LineIterator();
+    }
+
+    /**
+     * @return the whole content as a string, with line feeds as line breaks
+     */
+    String content() {
+        if (text != null) {
+            return text;
+        }
+        StringBuilder builder = new StringBuilder(end - start);
+        forEachLine(line -> {
+            if (!builder.isEmpty()) {
+                builder.append('\n');
+            }
+            builder.append(line);
+        });
+        return builder.toString();
+    }
+
+    /**
+     * Parses a plain decimal number without creating a string. Anything else
+     * is left to {@link BigDecimal#BigDecimal(String)}, with its exceptions.
+     *
+     * @param chars the characters to parse
+     * @return the amount
+     * @throws NumberFormatException if the characters are not a number
+     */
+    static BigDecimal parseAmount(CharSequence chars) {
+        int length = chars.length();
+        int i = 0;
+        boolean negative = false;
+        if (length > 0 && (chars.charAt(0) == '-' || chars.charAt(0) == '+')) {
+            negative = chars.charAt(0) == '-';
+            i++;
+        }
+        long unscaled = 0;
+        int scale = -1;
+        int digits = 0;
+        for (; i < length; i++) {
+            char c = chars.charAt(i);
+            if (c >= '0' && c <= '9' && digits < 18) {
+                unscaled = unscaled * 10 + (c - '0');
+                digits++;
+                if (scale >= 0) {
+                    scale++;
+                }
+            } else if (c == '.' && scale < 0) {
+                scale = 0;
+            } else {
+                return new BigDecimal(chars.toString());
+            }
+        }
+        if (digits == 0) {
+            return new BigDecimal(chars.toString());
+        }
+        return BigDecimal.valueOf(negative ? -unscaled : unscaled, Math.max(scale, 0));
+    }
+
+    /**
+     * Parses a date of the format yyyyMMdd without creating a string.
+     * Anything but eight digits is left to {@link Entity#DATE_FORMAT}, with
+     * its exceptions. As with the formatter, a day after the end of the month
+     * is moved to the last day of the month.
+     *
+     * @param chars the characters to parse
+     * @return the date
+     * @throws java.time.format.DateTimeParseException if the characters are
+     * not a date
+     */
+    static LocalDate parseDate(CharSequence chars) {
+        if (chars.length() == 8) {
+            int value = 0;
+            for (int i = 0; i < 8; i++) {
+                char c = chars.charAt(i);
+                if (c < '0' || c > '9') {
+                    return LocalDate.parse(chars, Entity.DATE_FORMAT);
+                }
+                value = value * 10 + (c - '0');
+            }
+            int year = value / 10000;
+            int month = value / 100 % 100;
+            int day = value % 100;
+            if (year > 0 && month >= 1 && month <= 12 && day >= 1 && day <= 31) {
+                return LocalDate.of(year, month, Math.min(day, YearMonth.of(year, month).lengthOfMonth()));
+            }
+        }
+        return LocalDate.parse(chars, Entity.DATE_FORMAT);
+    }
+
+    private CharSequence line(int from, int to) {
+        if (table != null) {
+            return new ByteLine(source, from, to, table);
+        }
+        byte[] bytes = new byte[to - from];
+        source.get(from, bytes);
+        String line = new String(bytes, charset);
+        if (!faulty) {
+            return line;
+        }
+        char[] chars = line.toCharArray();
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = FaultyCharacters.replace(chars[i]);
+        }
+        return new String(chars);
+    }
+
+    private char charAt(int index) {
+        int b = source.get(index) & 0xFF;
+        return table != null ? table[b] : (char) b;
+    }
+
+    private static boolean hasFaultyCharacters(ByteBuffer source, char[] table) {
+        boolean[] faulty = new boolean[256];
+        for (int b = 0; b < 256; b++) {
+            faulty[b] = FaultyCharacters.isFaulty(table[b]);
+        }
+        for (int i = source.position(); i < source.limit(); i++) {
+            if (faulty[source.get(i) & 0xFF]) {
+                return true;
+            }
+        }
+        return hasEscapedNoBreakSpace(source);
+    }
+
+    /**
+     * The escaped no-break space is looked for as text by
+     * {@link FaultyCharacters#stringContains(String)}.
+     */
+    private static boolean hasEscapedNoBreakSpace(ByteBuffer source) {
+        int last = source.limit() - ESCAPED_NO_BREAK_SPACE.length;
+        for (int i = source.position(); i <= last; i++) {
+            int j = 0;
+            while (j < ESCAPED_NO_BREAK_SPACE.length && source.get(i + j) == ESCAPED_NO_BREAK_SPACE[j]) {
+                j++;
+            }
+            if (j == ESCAPED_NO_BREAK_SPACE.length) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static char[] table(Charset charset) {
+        byte[] bytes = new byte[256];
+        for (int b = 0; b < 256; b++) {
+            bytes[b] = (byte) b;
+        }
+        return new String(bytes, charset).toCharArray();
+    }
+
+    private static char[] table(Charset charset, boolean faulty) {
+        char[] table = (charset.equals(StandardCharsets.ISO_8859_1) ? ISO_8859_1 : CP437).clone();
+        if (faulty) {
+            for (int b = 0; b < table.length; b++) {
+                table[b] = FaultyCharacters.replace(table[b]);
+            }
+        }
+        return table;
+    }
+
+    private static boolean[] boxDrawing() {
+        boolean[] boxDrawing = new boolean[256];
+        for (int b = 0; b < 256; b++) {
+            boxDrawing[b] = SieReader.isBoxDrawing(CP437[b]);
+        }
+        return boxDrawing;
+    }
+
+    private class LineIterator implements Iterator<CharSequence> {
+
+        private int position = start;
+
+        @Override
+        public boolean hasNext() {
+            // Trimmed content never ends with a line break, so the last line
+            // of the bytes always ends at the end
+            return text != null ? position < end : start < end && position <= end;
+        }
+
+        @Override
+        public CharSequence next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            if (text != null) {
+                int lineEnd = text.indexOf('\n', position);
+                if (lineEnd < 0) {
+                    lineEnd = end;
+                }
+                String line = text.substring(position, lineEnd);
+                position = lineEnd + 1;
+                return line.indexOf('\r') < 0 ? line : line.replace("\r", "");
+            }
+            int lineStart = position;
+            int i = lineStart;
+            while (i < end && source.get(i) != '\n' && source.get(i) != '\r') {
+                i++;
+            }
+            position = i + 1;
+            if (i < end && source.get(i) == '\r' && i + 1 < end && source.get(i + 1) == '\n') {
+                position++;
+            }
+            return line(lineStart, i);
+        }
+    }
+
+    /**
+     * A line of a single byte character set, decoded char by char.
+     */
+    private static final class ByteLine implements CharSequence {
+
+        private final ByteBuffer source;
+        private final int from;
+        private final int to;
+        private final char[] table;
+
+        private ByteLine(ByteBuffer source, int from, int to, char[] table) {
+            this.source = source;
+            this.from = from;
+            this.to = to;
+            this.table = table;
+        }
+
+        @Override
+        public int length() {
+            return to - from;
+        }
+
+        @Override
+        public char charAt(int index) {
+            return table[source.get(from + index) & 0xFF];
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return new ByteLine(source, from + start, from + end, table);
+        }
+
+        @Override
+        public String toString() {
+            char[] chars = new char[to - from];
+            for (int i = 0; i < chars.length; i++) {
+                chars[i] = table[source.get(from + i) & 0xFF];
+            }
+            return new String(chars);
+        }
+    }
+}
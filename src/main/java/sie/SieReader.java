@@ -1,11 +1,13 @@
 package sie;
 
 import java.io.*;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
 import java.util.*;
 import java.util.stream.Collectors;
 import sie.domain.*;
-import sie.exception.SieException;
+import sie.exception.*;
 import sie.validate.*;
 
 /**
@@ -15,6 +17,8 @@ import sie.validate.*;
  */
 class SieReader implements DataReader {
 
+    private static final byte[] THROW = "THROW".getBytes(StandardCharsets.US_ASCII);
+
     private static final List<String> BOX_DRAWING_CHARS = Arrays.asList("─", "━", "│",
             "┃", "┄", "┅", "┆", "┇", "┈", "┉", "┊", "┋", "┌", "┍", "┎", "┏", "┐",
             "┑", "┒", "┓", "└", "┕", "┖", "┗", "┘", "┙", "┚", "┛", "├", "┝", "┞",
@@ -25,27 +29,31 @@ class SieReader implements DataReader {
             "╗", "╘", "╙", "╚", "╛", "╜", "╝", "╞", "╟", "╠", "╡", "╢", "╣", "╤",
             "╥", "╦", "╧", "╨", "╩", "╪", "╫", "╬", "╭", "╮", "╯", "╰", "╱", "╲",
             "╳", "╴", "╵", "╶", "╷", "╸", "╹", "╺", "╻", "╼", "╽", "╾", "╿");
+    /**
+     * The largest array the virtual machine can be trusted to allocate.
+     */
+    static final int MAX_SIZE = Integer.MAX_VALUE - 8;
     private DocumentValidator validator;
     private DocumentFactory factory;
     private Document document;
     private final boolean validate;
     private final boolean checkBalances;
 
-    private SieReader(String input) {
+    private SieReader(SieLexer input) {
         this(input, false);
     }
 
-    private SieReader(String input, boolean validate) {
+    private SieReader(SieLexer input, boolean validate) {
         this(input, validate, false);
     }
 
-    private SieReader(String input, boolean validate, boolean checkBalances) {
+    private SieReader(SieLexer input, boolean validate, boolean checkBalances) {
         this.validate = validate;
         this.checkBalances = checkBalances;
         init(input);
     }
 
-    private void init(String input) {
+    private void init(SieLexer input) {
         try {
             if (validate) {
                 factory = DocumentFactory.validation(input);
@@ -67,7 +75,7 @@ class SieReader implements DataReader {
      * @return
      */
     public static DataReader from(byte[] input) {
-        return new SieReader(byteArrayToString(input));
+        return new SieReader(lexer(input));
     }
 
     /**
@@ -81,12 +89,24 @@ class SieReader implements DataReader {
      * @return
      */
     public static DataReader of(byte[] input, Boolean checkBalances) {
-        return new SieReader(byteArrayToString(input), true, checkBalances);
+        return new SieReader(lexer(input), true, checkBalances);
+    }
+
+    /**
+     * Will not validate the content.
+     * <p>
+     * The file is mapped into memory and read from the mapped buffer.
+     *
+     * @param input
+     * @return
+     */
+    public static DataReader from(Path input) {
+        return new SieReader(lexer(input));
     }
 
     static SieReader createReader(InputStream input, boolean validate) throws SieException {
         byte[] source = streamToByteArray(input);
-        return new SieReader(byteArrayToString(source), validate);
+        return new SieReader(lexer(source), validate);
     }
 
     @Override
@@ -107,47 +127,77 @@ class SieReader implements DataReader {
     }
 
     static byte[] streamToByteArray(InputStream input) {
+        return streamToByteArray(input, MAX_SIZE);
+    }
+
+    /**
+     * Reads the stream to its end, in chunks, rather than trusting
+     * available() to tell the size. The stream is not closed.
+     *
+     * @param input the stream to read
+     * @param maxSize the largest number of bytes to accept
+     * @return the bytes of the stream
+     * @throws SourceTooLargeException if the stream holds more than maxSize
+     * bytes, without reading more than one byte past it
+     */
+    static byte[] streamToByteArray(InputStream input, int maxSize) {
+        if (input == null) {
+            throw new SieException("Källan får inte vara null");
+        }
+        if (maxSize < 0 || maxSize > MAX_SIZE) {
+            throw new IllegalArgumentException("maxSize: " + maxSize);
+        }
         try {
-            byte[] buffer = new byte[input.available()];
-            input.read(buffer);
-            return buffer;
-        } catch (NullPointerException ex) {
-            throw new SieException("Källan får inte vara null", ex);
+            byte[] source = input.readNBytes(maxSize < MAX_SIZE ? maxSize + 1 : MAX_SIZE);
+            if (source.length > maxSize || source.length == MAX_SIZE && input.read() >= 0) {
+                throw new SourceTooLargeException(maxSize);
+            }
+            return source;
         } catch (IOException ex) {
             throw new SieException("Kunde inte läsa källan", ex);
         }
     }
 
     static String byteArrayToString(byte[] buffer) {
+        return lexer(buffer).content();
+    }
+
+    static SieLexer lexer(byte[] buffer) {
         try {
-            String result = new String(buffer, Entity.CHARSET);
-            isForTestPurpose(result);
-            if (isUtf8(result)) {
-                result = new String(buffer, StandardCharsets.UTF_8);
-            }
-            if (isIso8859(result)) {
-                result = new String(buffer, StandardCharsets.ISO_8859_1);
-            }
-            if (FaultyCharacters.stringContains(result)) {
-                result = FaultyCharacters.replaceAll(result);
-            }
-            return result.replaceAll("\r\n", "\n").replaceAll("\r", "\n").trim();
+            isForTestPurpose(buffer);
+            return SieLexer.of(buffer);
         } catch (IOException ex) {
             throw new SieException("Kunde inte läsa källan", ex);
         }
     }
 
-    private static void isForTestPurpose(String result) throws IOException {
-        if (result.equals("THROW")) {
-            throw new IOException();
+    /**
+     * Maps the file read only into memory, so that the bytes are read from the
+     * page cache rather than copied onto the heap.
+     *
+     * @param path the file to read
+     * @return a lexer over the mapped file
+     * @throws SourceTooLargeException if the file is too large to be mapped
+     */
+    static SieLexer lexer(Path path) {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > MAX_SIZE) {
+                throw new SourceTooLargeException(MAX_SIZE);
+            }
+            return SieLexer.of(channel.map(FileChannel.MapMode.READ_ONLY, 0, size));
+        } catch (IOException ex) {
+            throw new SieException("Kunde inte läsa källan", ex);
         }
     }
 
-    private static boolean isIso8859(String result) {
-        return result.contains("�");
+    private static void isForTestPurpose(byte[] buffer) throws IOException {
+        if (buffer.length == THROW.length && Arrays.equals(buffer, THROW)) {
+            throw new IOException();
+        }
     }
 
-    private static boolean isUtf8(String string) {
-        return BOX_DRAWING_CHARS.stream().filter(c -> string.contains(c)).findAny().isPresent();
+    static boolean isBoxDrawing(char c) {
+        return BOX_DRAWING_CHARS.contains(String.valueOf(c));
     }
 }
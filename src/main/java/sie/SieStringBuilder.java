@@ -1,11 +1,12 @@
 package sie;
 
-import java.time.LocalDate;
-import java.time.format.DateTimeFormatter;
+import java.io.*;
+import java.math.BigDecimal;
+import java.time.*;
 import java.util.*;
-import java.util.stream.*;
+import java.util.concurrent.*;
 import sie.domain.*;
-import sie.exception.InvalidDocumentException;
+import sie.exception.*;
 
 /**
  *
@@ -14,113 +15,284 @@ import sie.exception.InvalidDocumentException;
  */
 class SieStringBuilder {
 
+    private static final int BUFFER_SIZE = 8192;
+    private static final int CHUNK_SIZE = 512;
+
     private final Document document;
     private final Document.Type sieType;
-    private final StringBuilder result;
+    private final Appendable result;
+    private final boolean parallel;
+    private final StringBuilder buffer = new StringBuilder(BUFFER_SIZE + 512);
+    private final char[] digits = new char[20];
+    private char[] chars;
+    private boolean firstField;
+
+    private SieStringBuilder(Document document, Appendable result) {
+        this(document, result, false);
+    }
 
-    private SieStringBuilder(Document document) {
+    private SieStringBuilder(Document document, Appendable result, boolean parallel) {
         this.document = document;
         this.sieType = document.metaData().sieType();
-        result = new StringBuilder();
+        this.result = result;
+        this.parallel = parallel;
     }
 
     public static String parse(Document document) {
-        return new SieStringBuilder(document).asString();
+        StringBuilder result = new StringBuilder();
+        write(document, result);
+        return result.toString();
     }
 
-    private String asString() {
+    /**
+     * Writes the SIE content of the document, piece by piece, to the target
+     * rather than collecting it into one string.
+     *
+     * @param document the document to write
+     * @param target where to append the content
+     */
+    static void write(Document document, Appendable target) {
+        write(document, target, false);
+    }
+
+    /**
+     * Writes the SIE content of the document to the target, optionally with
+     * the vouchers rendered in parallel.
+     * <p>
+     * In parallel, the vouchers are split into chunks that are rendered into
+     * buffers of their own in the common fork-join pool. The buffers are
+     * written in the original order, and only a few chunks per thread are
+     * rendered ahead of the one being written. The content is the same
+     * either way.
+     *
+     * @param document the document to write
+     * @param target where to append the content
+     * @param parallel true to render the vouchers in parallel
+     */
+    static void write(Document document, Appendable target, boolean parallel) {
+        SieStringBuilder builder = new SieStringBuilder(document, target, parallel);
+        builder.addAll();
+        builder.flush();
+    }
+
+    /**
+     * Writes the part of the SIE content that comes before the object
+     * declarations.
+     *
+     * @param document the document to write
+     * @param target where to append the content
+     */
+    static void writeMetaData(Document document, Appendable target) {
+        SieStringBuilder builder = new SieStringBuilder(document, target);
+        builder.addMetaData();
+        builder.flush();
+    }
+
+    static void writeObjectDeclarations(Document document, Appendable target) {
+        SieStringBuilder builder = new SieStringBuilder(document, target);
+        builder.addObjectDeclarations();
+        builder.flush();
+    }
+
+    static void writeAccountingPlan(Document document, Appendable target) {
+        SieStringBuilder builder = new SieStringBuilder(document, target);
+        builder.addAccountingPlan();
+        builder.flush();
+    }
+
+    /**
+     * Writes the vouchers given, whatever the type of the document.
+     *
+     * @param document the document the vouchers belong to
+     * @param vouchers the vouchers to write, in order
+     * @param target where to append the content
+     */
+    static void writeVouchers(Document document, List<Voucher> vouchers, Appendable target) {
+        SieStringBuilder builder = new SieStringBuilder(document, target);
+        builder.addVouchers(vouchers);
+        builder.flush();
+    }
+
+    private void addAll() {
         addMetaData();
         addObjectDeclarations();
         addAccountingPlan();
         if (sieType.getNumber().equals(4)) {
-            addVouchers();
+            if (parallel) {
+                addVouchersInParallel(document.vouchers());
+            } else {
+                addVouchers(document.vouchers());
+            }
+        }
+    }
+
+    private void addVouchersInParallel(List<Voucher> vouchers) {
+        if (vouchers.size() <= CHUNK_SIZE) {
+            addVouchers(vouchers);
+            return;
+        }
+        flush();
+        int window = Math.max(2, ForkJoinPool.getCommonPoolParallelism() * 2);
+        Deque<CompletableFuture<StringBuilder>> pending = new ArrayDeque<>();
+        try {
+            for (int from = 0; from < vouchers.size(); from += CHUNK_SIZE) {
+                List<Voucher> chunk = vouchers.subList(from, Math.min(from + CHUNK_SIZE, vouchers.size()));
+                pending.add(CompletableFuture.supplyAsync(() -> render(chunk)));
+                if (pending.size() >= window) {
+                    writeOut(join(pending.poll()));
+                }
+            }
+            while (!pending.isEmpty()) {
+                writeOut(join(pending.poll()));
+            }
+        } finally {
+            pending.forEach(future -> future.cancel(false));
+        }
+    }
+
+    private StringBuilder render(List<Voucher> vouchers) {
+        StringBuilder content = new StringBuilder();
+        SieStringBuilder builder = new SieStringBuilder(document, content);
+        builder.addVouchers(vouchers);
+        builder.flush();
+        return content;
+    }
+
+    private static StringBuilder join(CompletableFuture<StringBuilder> future) {
+        try {
+            return future.join();
+        } catch (CompletionException ex) {
+            if (ex.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new SieException(ex.getCause());
         }
-        return result.toString();
     }
 
     private void addObjectDeclarations() {
         document.dimensions().forEach(dim -> {
             if (dim.isSubDimension()) {
-                add(Entity.SUB_DIMENSION, dim.id().toString(), dim.label(), dim.optParentId().map(id -> id.toString()).orElse(""));
+                tag(Entity.SUB_DIMENSION);
+                integer(dim.id());
+                field(dim.label());
+                dim.optParentId().ifPresent(this::integer);
             } else {
-                add(Entity.DIMENSION, dim.id().toString(), dim.label());
+                tag(Entity.DIMENSION);
+                integer(dim.id());
+                field(dim.label());
             }
+            endLine();
         });
-        document.costCentres().forEach(unit -> {
-            add(Entity.OBJECT, unit.dimensionId().toString(), unit.number(), unit.label());
-        });
-        document.costBearers().forEach(unit -> {
-            add(Entity.OBJECT, unit.dimensionId().toString(), unit.number(), unit.label());
-        });
-        document.projects().forEach(unit -> {
-            add(Entity.OBJECT, unit.dimensionId().toString(), unit.number(), unit.label());
-        });
+        document.costCentres().forEach(this::addObject);
+        document.costBearers().forEach(this::addObject);
+        document.projects().forEach(this::addObject);
+    }
+
+    private void addObject(AccountingObject unit) {
+        tag(Entity.OBJECT);
+        integer(unit.dimensionId());
+        field(unit.number());
+        field(unit.label());
+        endLine();
     }
 
-    private void addVouchers() {
-        document.vouchers().forEach(voucher -> {
-            add(Entity.VOUCHER,
-                    "\"" + voucher.optSeries().orElse("") + "\"",
-                    voucher.optNumber().map(num -> num.toString()).orElse("\"\""),
-                    Optional.ofNullable(voucher.date()).map(date -> date.format(Entity.DATE_FORMAT)).orElse("\"\""),
-                    "\"" + voucher.optText().orElse("") + "\"",
-                    voucher.optRegistrationDate().map(date -> date.format(Entity.DATE_FORMAT)).orElse("\"\""),
-                    "\"" + voucher.optSignature().orElse("") + "\"", "\n{");
+    private void addVouchers(List<Voucher> vouchers) {
+        vouchers.forEach(voucher -> {
+            tag(Entity.VOUCHER);
+            quoted(voucher.optSeries().orElse(""));
+            if (voucher.optNumber().isPresent()) {
+                integer(voucher.optNumber().get());
+            } else {
+                quoted("");
+            }
+            dateOrEmpty(voucher.date());
+            quoted(voucher.optText().orElse(""));
+            dateOrEmpty(voucher.optRegistrationDate().orElse(null));
+            quoted(voucher.optSignature().orElse(""));
+            field("\n{");
+            endLine();
             voucher.transactions().forEach(trans -> {
-                String objects = "{}";
-                if (!trans.objectIds().isEmpty()) {
-                    objects = trans.objectIds().stream().map(o -> "\"" + o.dimensionId() + "\" \"" + o.objectNumber() + "\"").collect(Collectors.joining(" ", "{", "}"));
+                tag(Entity.TRANSACTION);
+                field(trans.accountNumber());
+                separate();
+                buffer.append('{');
+                List<Account.ObjectId> objectIds = trans.objectIds();
+                for (int i = 0; i < objectIds.size(); i++) {
+                    if (i > 0) {
+                        buffer.append(' ');
+                    }
+                    Account.ObjectId o = objectIds.get(i);
+                    buffer.append('"');
+                    appendInteger(o.dimensionId());
+                    buffer.append("\" \"").append(o.objectNumber()).append('"');
                 }
-                String transDate = "\"\"";
-                if (trans.date() != null) {
-                    transDate = trans.date().format(Entity.DATE_FORMAT);
-                }
-                add(Entity.TRANSACTION,
-                        trans.accountNumber(),
-                        objects,
-                        trans.amount().toString(),
-                        transDate,
-                        "\"" + trans.optText().orElse("") + "\"",
-                        trans.optQuantity().map(q -> q.toString()).orElse(""),
-                        trans.getSignature().map(sign -> "\"" + sign + "\"").orElse(""));
+                buffer.append('}');
+                amount(trans.amount());
+                dateOrEmpty(trans.date());
+                quoted(trans.optText().orElse(""));
+                trans.optQuantity().ifPresent(q -> {
+                    separate();
+                    buffer.append(q.doubleValue());
+                });
+                trans.getSignature().ifPresent(this::quoted);
+                endLine();
             });
-            result.append("}\n");
+            buffer.append("}\n");
+            flushIfFull();
         });
     }
 
     private void addAccountingPlan() {
         document.optAccountingPlan().ifPresent(ac -> {
             List<Account> accounts = ac.accounts();
-            accounts.sort(Account::compareTo);
             accounts.forEach(account -> {
-                add(Entity.ACCOUNT, account.number(), account.optLabel().map(l -> "\"" + l + "\"").orElse("\"\""));
+                tag(Entity.ACCOUNT);
+                field(account.number());
+                quoted(account.optLabel().orElse(""));
+                endLine();
             });
             accounts.stream().filter(account -> account.optType().isPresent()).forEach(account -> {
-                add(Entity.ACCOUNT_TYPE, account.number(), account.optType().get().name());
+                tag(Entity.ACCOUNT_TYPE);
+                field(account.number());
+                field(account.optType().get().name());
+                endLine();
             });
             accounts.stream().filter(account -> account.optUnit().isPresent()).forEach(account -> {
-                add(Entity.ACCOUNT_TYPE, account.number(), "\"" + account.optUnit().get() + "\"");
+                tag(Entity.ACCOUNT_TYPE);
+                field(account.number());
+                quoted(account.optUnit().get());
+                endLine();
             });
             accounts.stream().filter(account -> !account.sruCodes().isEmpty()).forEach(account -> {
-                account.sruCodes().forEach(sru -> add(Entity.SRU, account.number(), sru));
+                account.sruCodes().forEach(sru -> {
+                    tag(Entity.SRU);
+                    field(account.number());
+                    field(sru);
+                    endLine();
+                });
             });
             if (!sieType.equals(Document.Type.I4)) {
                 accounts.stream().filter(account -> !account.openingBalances().isEmpty())
                         .flatMap(account -> {
                             return account.openingBalances().stream().map(balance -> new ResultBalance(Entity.OPENING_BALANCE, account.number(), balance));
-                        }).sorted().forEach(rb -> add(rb.getTag(), rb.getParts()));
+                        }).sorted().forEach(this::addBalance);
                 accounts.stream().filter(account -> !account.closingBalances().isEmpty())
                         .flatMap(account -> {
                             return account.closingBalances().stream().map(balance -> new ResultBalance(Entity.CLOSING_BALANCE, account.number(), balance));
-                        }).sorted().forEach(rb -> add(rb.getTag(), rb.getParts()));
+                        }).sorted().forEach(this::addBalance);
                 accounts.stream().filter(account -> !account.results().isEmpty())
                         .flatMap(account -> {
                             return account.results().stream().map(balance -> new ResultBalance(Entity.RESULT, account.number(), balance));
-                        }).sorted().forEach(rb -> add(rb.getTag(), rb.getParts()));
+                        }).sorted().forEach(this::addBalance);
                 if (!sieType.equals(Document.Type.E1)) {
                     accounts.stream().filter(account -> !account.getPeriodicalBudgets().isEmpty()).forEach(account -> {
                         account.getPeriodicalBudgets().forEach(budg -> {
-                            add(Entity.PERIODICAL_BUDGET, budg.yearIndex().toString(), budg.period().format(Entity.YEAR_MONTH_FORMAT), account.number(), budg.amount().toString());
+                            tag(Entity.PERIODICAL_BUDGET);
+                            integer(budg.yearIndex());
+                            yearMonth(budg.period());
+                            field(account.number());
+                            amount(budg.amount());
+                            endLine();
                         });
                     });
                 }
@@ -128,6 +300,14 @@ class SieStringBuilder {
         });
     }
 
+    private void addBalance(ResultBalance balance) {
+        tag(balance.tag);
+        integer(balance.balance.yearIndex());
+        field(balance.number);
+        amount(balance.balance.amount());
+        endLine();
+    }
+
     private void addMetaData() {
         if (document.metaData() == null) {
             throw new InvalidDocumentException("MetaData is missing");
@@ -194,9 +374,163 @@ class SieStringBuilder {
     }
 
     private void add(String prefix, String... parts) {
-        result.append("#").append(prefix).append(" ")
-                .append(Stream.of(parts).filter(p -> p != null && !p.isEmpty()).collect(Collectors.joining(" ")))
-                .append("\n");
+        tag(prefix);
+        for (String part : parts) {
+            field(part);
+        }
+        endLine();
+    }
+
+    /**
+     * Starts a line. The fields that follow are separated by single spaces,
+     * and left out when empty, as if the non-empty fields were joined.
+     */
+    private void tag(String prefix) {
+        buffer.append('#').append(prefix).append(' ');
+        firstField = true;
+    }
+
+    private void separate() {
+        if (!firstField) {
+            buffer.append(' ');
+        }
+        firstField = false;
+    }
+
+    private void field(String value) {
+        if (value != null && !value.isEmpty()) {
+            separate();
+            buffer.append(value);
+        }
+    }
+
+    private void quoted(String value) {
+        separate();
+        buffer.append('"').append(value).append('"');
+    }
+
+    private void integer(Integer value) {
+        separate();
+        appendInteger(value);
+    }
+
+    private void appendInteger(Integer value) {
+        if (value == null) {
+            buffer.append((Object) null);
+        } else {
+            buffer.append(value.intValue());
+        }
+    }
+
+    /**
+     * Appends the amount as {@link BigDecimal#toString()} would, without
+     * creating the string for amounts that fit in a long and are not written
+     * in exponential notation.
+     */
+    private void amount(BigDecimal amount) {
+        separate();
+        int scale = amount.scale();
+        int precision = amount.precision();
+        if (scale < 0 || scale > 18 || precision > 18 || precision - 1 - scale < -6) {
+            buffer.append(amount.toString());
+            return;
+        }
+        long unscaled = amount.unscaledValue().longValue();
+        if (unscaled < 0) {
+            buffer.append('-');
+            unscaled = -unscaled;
+        }
+        int length = 0;
+        do {
+            digits[digits.length - ++length] = (char) ('0' + unscaled % 10);
+            unscaled /= 10;
+        } while (unscaled > 0);
+        int first = digits.length - length;
+        int integers = length - scale;
+        if (integers > 0) {
+            buffer.append(digits, first, integers);
+            if (scale > 0) {
+                buffer.append('.').append(digits, first + integers, scale);
+            }
+        } else {
+            buffer.append("0.");
+            for (int i = integers; i < 0; i++) {
+                buffer.append('0');
+            }
+            buffer.append(digits, first, length);
+        }
+    }
+
+    private void dateOrEmpty(LocalDate date) {
+        if (date == null) {
+            quoted("");
+            return;
+        }
+        separate();
+        int year = date.getYear();
+        if (year < 1 || year > 9999) {
+            buffer.append(date.format(Entity.DATE_FORMAT));
+            return;
+        }
+        appendDigits(year, 4);
+        appendDigits(date.getMonthValue(), 2);
+        appendDigits(date.getDayOfMonth(), 2);
+    }
+
+    private void yearMonth(YearMonth period) {
+        separate();
+        int year = period.getYear();
+        if (year < 1 || year > 9999) {
+            buffer.append(period.format(Entity.YEAR_MONTH_FORMAT));
+            return;
+        }
+        appendDigits(year, 4);
+        appendDigits(period.getMonthValue(), 2);
+    }
+
+    private void appendDigits(int value, int width) {
+        for (int divisor = width == 4 ? 1000 : 10; divisor > 0; divisor /= 10) {
+            buffer.append((char) ('0' + value / divisor % 10));
+        }
+    }
+
+    private void endLine() {
+        buffer.append('\n');
+        flushIfFull();
+    }
+
+    private void flushIfFull() {
+        if (buffer.length() >= BUFFER_SIZE) {
+            flush();
+        }
+    }
+
+    /**
+     * Hands the buffered lines to the target, as a char array to writers so
+     * that no string is created.
+     */
+    private void flush() {
+        writeOut(buffer);
+        buffer.setLength(0);
+    }
+
+    private void writeOut(StringBuilder content) {
+        try {
+            if (result instanceof StringBuilder builder) {
+                builder.append(content);
+            } else if (result instanceof Writer writer) {
+                int length = content.length();
+                if (chars == null || chars.length < length) {
+                    chars = new char[Math.max(length, BUFFER_SIZE * 2)];
+                }
+                content.getChars(0, length, chars, 0);
+                writer.write(chars, 0, length);
+            } else {
+                result.append(content);
+            }
+        } catch (IOException ex) {
+            throw new SieException(ex);
+        }
     }
 
     private static class ResultBalance implements Comparable<ResultBalance> {
@@ -211,14 +545,6 @@ class SieStringBuilder {
             this.balance = balance;
         }
 
-        public String getTag() {
-            return tag;
-        }
-
-        public String[] getParts() {
-            return new String[]{balance.yearIndex().toString(), number, balance.amount().toString()};
-        }
-
         @Override
         public int compareTo(ResultBalance other) {
             int result = other.balance.yearIndex().compareTo(this.balance.yearIndex());
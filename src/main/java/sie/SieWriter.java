@@ -1,7 +1,7 @@
 package sie;
 
-import java.io.File;
-import java.io.IOException;
+import java.io.*;
+import java.nio.channels.*;
 import java.nio.charset.*;
 import java.nio.file.Files;
 import sie.domain.*;
@@ -14,6 +14,8 @@ import sie.exception.SieException;
  */
 class SieWriter {
 
+    private static final int BUFFER_SIZE = 8192;
+
     private SieWriter() {
 
     }
@@ -34,6 +36,11 @@ class SieWriter {
         if (charset.equals(StandardCharsets.UTF_8)) {
             return SieStringBuilder.parse(document);
         }
+        if (charset.equals(Entity.CHARSET)) {
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            write(document, output, charset);
+            return output.toString();
+        }
         return new String(SieStringBuilder.parse(document).getBytes(charset));
     }
 
@@ -51,12 +58,92 @@ class SieWriter {
     }
 
     public static File write(Document document, File target, Charset charset) {
-        try {
-            String content = SieStringBuilder.parse(document);
-            Files.write(target.toPath(), content.getBytes(charset));
+        try (OutputStream output = Files.newOutputStream(target.toPath())) {
+            write(document, output, charset);
             return target;
         } catch (IOException ex) {
             throw new SieException(ex);
         }
     }
+
+    /**
+     * Writes the SIE content to the stream, encoded a buffer at a time. The
+     * stream is flushed but not closed.
+     *
+     * @param document
+     * @param target
+     * @param charset
+     */
+    public static void write(Document document, OutputStream target, Charset charset) {
+        write(document, target, charset, false);
+    }
+
+    /**
+     * Writes the SIE content to the stream, optionally with the vouchers
+     * rendered in parallel. The stream is flushed but not closed.
+     *
+     * @param document
+     * @param target
+     * @param charset
+     * @param parallel
+     */
+    public static void write(Document document, OutputStream target, Charset charset, boolean parallel) {
+        write(document, writer(target, charset), parallel);
+    }
+
+    /**
+     * Writes the SIE content to the channel, encoded a buffer at a time. The
+     * channel is not closed.
+     *
+     * @param document
+     * @param target
+     * @param charset
+     */
+    public static void write(Document document, WritableByteChannel target, Charset charset) {
+        if (charset.equals(Entity.CHARSET)) {
+            write(document, new Cp437Writer(Channels.newOutputStream(target)));
+            return;
+        }
+        write(document, Channels.newWriter(target, charset.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE), BUFFER_SIZE));
+    }
+
+    /**
+     * Cp437 is encoded by {@link Cp437Writer}, other charsets by the JDK.
+     */
+    private static Writer writer(OutputStream target, Charset charset) {
+        if (charset.equals(Entity.CHARSET)) {
+            return new Cp437Writer(target);
+        }
+        return new OutputStreamWriter(target, charset);
+    }
+
+    /**
+     * Writes the SIE content to the writer, a buffer of fixed size at a time.
+     * The writer is flushed but not closed.
+     *
+     * @param document
+     * @param target
+     */
+    public static void write(Document document, Writer target) {
+        write(document, target, false);
+    }
+
+    /**
+     * Writes the SIE content to the writer, optionally with the vouchers
+     * rendered in parallel. The writer is flushed but not closed.
+     *
+     * @param document
+     * @param target
+     * @param parallel
+     */
+    public static void write(Document document, Writer target, boolean parallel) {
+        try {
+            SieStringBuilder.write(document, target, parallel);
+            target.flush();
+        } catch (IOException ex) {
+            throw new SieException(ex);
+        }
+    }
 }
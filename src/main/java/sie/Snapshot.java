@@ -0,0 +1,582 @@
+package sie;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.time.*;
+import java.util.*;
+import java.util.function.*;
+import sie.domain.*;
+import sie.exception.InvalidSnapshotException;
+import sie.exception.SieException;
+
+/**
+ * A compact binary form of a Document, for caching parsed documents.
+ * <p>
+ * The snapshot starts with the magic bytes "SIE4J" and a version number,
+ * followed by a table of all strings in the document and the document
+ * itself. Every string - account numbers, object ids, texts, names of types -
+ * is stored once in the table and referred to by its index. Numbers are
+ * varints, zigzag encoded where they may be negative, dates are days since
+ * the epoch and amounts are an unscaled long and a scale. Optional values
+ * take the value zero when missing. A scale is at most {@link #MAX_SCALE}
+ * from zero.
+ * <p>
+ * The values are those given by the getters of the entities, so a document
+ * read from a snapshot gives the same SIE content and checksum as the
+ * original. The source lines of the entities are not part of the snapshot.
+ *
+ * @author Håkan Lidén
+ */
+class Snapshot {
+
+    static final int VERSION = 1;
+    private static final byte[] MAGIC = {'S', 'I', 'E', '4', 'J'};
+    private static final int COMPACT = 0;
+    private static final int BIG = 1;
+    static final int MAX_SCALE = 64;
+
+    private Snapshot() {
+    }
+
+    static byte[] write(Document document) {
+        Output body = new Output();
+        body.document(document);
+        Output head = new Output();
+        head.bytes(MAGIC, 0, MAGIC.length);
+        head.varint(VERSION);
+        head.varint(body.strings.size());
+        for (String string : body.strings.keySet()) {
+            byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+            head.varint(bytes.length);
+            head.bytes(bytes, 0, bytes.length);
+        }
+        head.bytes(body.buffer, 0, body.size);
+        return Arrays.copyOf(head.buffer, head.size);
+    }
+
+    static void write(Document document, OutputStream target) {
+        try {
+            target.write(write(document));
+            target.flush();
+        } catch (IOException ex) {
+            throw new SieException(ex);
+        }
+    }
+
+    static Document read(byte[] source) {
+        try {
+            return new Input(source).document();
+        } catch (IllegalArgumentException | IndexOutOfBoundsException | ArithmeticException
+                | DateTimeException | NullPointerException ex) {
+            throw new InvalidSnapshotException("Ögonblicksbilden är skadad", ex);
+        }
+    }
+
+    private static final class Output {
+
+        private final Map<String, Integer> strings = new LinkedHashMap<>();
+        private byte[] buffer = new byte[8192];
+        private int size;
+
+        private void document(Document document) {
+            metaData(document.metaData());
+            list(document.dimensions(), dimension -> {
+                integer(dimension.id());
+                string(dimension.label());
+                integer(dimension.optParentId().orElse(null));
+            });
+            list(document.objects(), object -> {
+                integer(object.dimensionId());
+                string(object.number());
+                string(object.label());
+            });
+            Optional<AccountingPlan> plan = document.optAccountingPlan();
+            flag(plan.isPresent());
+            plan.ifPresent(this::accountingPlan);
+            list(document.vouchers(), this::voucher);
+            string(document.optChecksum().orElse(null));
+        }
+
+        private void metaData(MetaData metaData) {
+            Boolean read = metaData.isRead();
+            varint(read == null ? 0 : read ? 2 : 1);
+            Program program = metaData.program();
+            flag(program != null);
+            if (program != null) {
+                string(program.name());
+                string(program.version());
+            }
+            Generated generated = metaData.generated();
+            flag(generated != null);
+            if (generated != null) {
+                date(generated.date());
+                string(generated.optSignature().orElse(null));
+            }
+            string(metaData.sieType().name());
+            string(metaData.optComments().orElse(null));
+            Company company = metaData.getCompany();
+            flag(company != null);
+            if (company != null) {
+                company(company);
+            }
+            integer(metaData.optTaxationYear().map(Year::getValue).orElse(null));
+            list(metaData.financialYears(), year -> {
+                integer(year.index());
+                date(year.startDate());
+                date(year.endDate());
+            });
+            date(metaData.optPeriodRange().orElse(null));
+            string(metaData.optCurrency().orElse(null));
+        }
+
+        private void company(Company company) {
+            string(company.name());
+            string(company.optId().orElse(null));
+            string(company.optType().map(Company.Type::name).orElse(null));
+            string(company.optCorporateId().orElse(null));
+            integer(company.optAquisitionNumber().orElse(null));
+            string(company.optSniCode().orElse(null));
+            Optional<Address> address = company.optAddress();
+            flag(address.isPresent());
+            address.ifPresent(a -> {
+                string(a.contact());
+                string(a.streetAddress());
+                string(a.postalAddress());
+                string(a.phone());
+            });
+        }
+
+        private void accountingPlan(AccountingPlan plan) {
+            string(plan.optType().orElse(null));
+            list(plan.accounts(), account -> {
+                string(account.number());
+                string(account.optLabel().orElse(null));
+                string(account.optType().map(Account.Type::name).orElse(null));
+                string(account.optUnit().orElse(null));
+                list(account.sruCodes(), this::string);
+                list(account.openingBalances(), this::balance);
+                list(account.closingBalances(), this::balance);
+                list(account.results(), this::balance);
+                list(account.objectOpeningBalances(), this::objectBalance);
+                list(account.optObjectClosingBalances(), this::objectBalance);
+                list(account.getPeriodicalBudgets(), budget -> {
+                    integer(budget.yearIndex());
+                    period(budget.period());
+                    amount(budget.amount());
+                });
+                list(account.periodicalBalances(), balance -> {
+                    integer(balance.yearIndex());
+                    period(balance.period());
+                    Optional<Account.ObjectId> objectId = balance.optObjectId();
+                    flag(objectId.isPresent());
+                    objectId.ifPresent(this::objectId);
+                    amount(balance.amount());
+                    quantity(balance.optQuantity().orElse(null));
+                });
+            });
+        }
+
+        private void balance(Balance balance) {
+            amount(balance.amount());
+            integer(balance.yearIndex());
+        }
+
+        private void objectBalance(ObjectBalance balance) {
+            amount(balance.amount());
+            integer(balance.yearIndex());
+            objectId(balance.objectId());
+            quantity(balance.optQuantity().orElse(null));
+        }
+
+        private void objectId(Account.ObjectId objectId) {
+            integer(objectId.dimensionId());
+            string(objectId.objectNumber());
+        }
+
+        private void voucher(Voucher voucher) {
+            string(voucher.optSeries().orElse(null));
+            integer(voucher.optNumber().orElse(null));
+            date(voucher.date());
+            string(voucher.optText().orElse(null));
+            date(voucher.optRegistrationDate().orElse(null));
+            string(voucher.optSignature().orElse(null));
+            list(voucher.transactions(), transaction -> {
+                string(transaction.accountNumber());
+                amount(transaction.amount());
+                date(transaction.date());
+                string(transaction.optText().orElse(null));
+                quantity(transaction.optQuantity().orElse(null));
+                string(transaction.getSignature().orElse(null));
+                list(transaction.objectIds(), this::objectId);
+            });
+        }
+
+        private <T> void list(List<T> list, Consumer<T> element) {
+            varint(list.size());
+            list.forEach(element);
+        }
+
+        private void flag(boolean value) {
+            varint(value ? 1 : 0);
+        }
+
+        private void string(String value) {
+            if (value == null) {
+                varint(0);
+                return;
+            }
+            Integer index = strings.get(value);
+            if (index == null) {
+                index = strings.size();
+                strings.put(value, index);
+            }
+            varint(index + 1L);
+        }
+
+        private void integer(Integer value) {
+            varint(value == null ? 0 : zigzag(value) + 1);
+        }
+
+        private void date(LocalDate value) {
+            varint(value == null ? 0 : zigzag(value.toEpochDay()) + 1);
+        }
+
+        private void period(YearMonth value) {
+            varint(value == null ? 0 : zigzag(value.getYear() * 12L + value.getMonthValue() - 1) + 1);
+        }
+
+        private void quantity(Double value) {
+            flag(value != null);
+            if (value != null) {
+                long bits = Double.doubleToRawLongBits(value);
+                for (int shift = 56; shift >= 0; shift -= 8) {
+                    put((int) (bits >>> shift));
+                }
+            }
+        }
+
+        private void amount(BigDecimal value) {
+            if (value == null) {
+                varint(0);
+                return;
+            }
+            if (Math.abs(value.scale()) > MAX_SCALE) {
+                throw new InvalidSnapshotException("Beloppet " + value + " kan inte sparas i en ögonblicksbild");
+            }
+            BigInteger unscaled = value.unscaledValue();
+            boolean compact = unscaled.bitLength() < 64;
+            varint((zigzag(value.scale()) << 1 | (compact ? COMPACT : BIG)) + 1);
+            if (compact) {
+                varint(zigzag(unscaled.longValue()));
+            } else {
+                byte[] bytes = unscaled.toByteArray();
+                varint(bytes.length);
+                bytes(bytes, 0, bytes.length);
+            }
+        }
+
+        private static long zigzag(long value) {
+            return (value << 1) ^ (value >> 63);
+        }
+
+        private void varint(long value) {
+            while ((value & ~0x7FL) != 0) {
+                put((int) (value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            put((int) value);
+        }
+
+        private void put(int b) {
+            if (size == buffer.length) {
+                buffer = Arrays.copyOf(buffer, buffer.length * 2);
+            }
+            buffer[size++] = (byte) b;
+        }
+
+        private void bytes(byte[] bytes, int offset, int length) {
+            if (size + length > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, size + length));
+            }
+            System.arraycopy(bytes, offset, buffer, size, length);
+            size += length;
+        }
+    }
+
+    private static final class Input {
+
+        private final byte[] source;
+        private int position;
+        private String[] strings;
+
+        private Input(byte[] source) {
+            this.source = source;
+        }
+
+        private Document document() {
+            if (source.length < MAGIC.length
+                    || !Arrays.equals(source, 0, MAGIC.length, MAGIC, 0, MAGIC.length)) {
+                throw new InvalidSnapshotException("Källan är inte en ögonblicksbild av ett SIE-dokument");
+            }
+            position = MAGIC.length;
+            long version = varint();
+            if (version != VERSION) {
+                throw new InvalidSnapshotException("Ögonblicksbildens version " + version + " stöds inte");
+            }
+            strings = new String[length()];
+            for (int i = 0; i < strings.length; i++) {
+                int length = length();
+                strings[i] = new String(source, position, length, StandardCharsets.UTF_8);
+                position += length;
+            }
+            MetaData metaData = metaData();
+            List<AccountingDimension> dimensions = list(() -> AccountingDimension.of(integer(), string(), integer()));
+            List<AccountingObject> objects = list(() -> AccountingObject.of(integer(), string(), string()));
+            AccountingPlan plan = flag() ? accountingPlan() : null;
+            List<Voucher> vouchers = list(this::voucher);
+            String checksum = string();
+            if (position != source.length) {
+                throw new InvalidSnapshotException("Ögonblicksbilden är skadad");
+            }
+            return Document.builder()
+                    .metaData(metaData)
+                    .dimensions(dimensions)
+                    .objects(objects)
+                    .accountingPlan(plan)
+                    .vouchers(vouchers)
+                    .checksum(checksum)
+                    .calculateChecksum(checksum != null)
+                    .apply();
+        }
+
+        private MetaData metaData() {
+            long read = varint();
+            MetaData.Builder builder = MetaData.builder()
+                    .read(read == 0 ? null : read == 2);
+            if (flag()) {
+                builder.program(Program.of(string(), string()));
+            }
+            if (flag()) {
+                builder.generated(Generated.of(date(), string()));
+            }
+            builder.sieType(Document.Type.valueOf(requiredString()))
+                    .comments(string());
+            if (flag()) {
+                builder.company(company());
+            }
+            Integer taxationYear = integer();
+            return builder.taxationYear(taxationYear == null ? null : Year.of(taxationYear))
+                    .financialYears(list(() -> FinancialYear.of(integer(), date(), date())))
+                    .periodRange(date())
+                    .currency(string())
+                    .apply();
+        }
+
+        private Company company() {
+            Company.Builder builder = Company.builder(string())
+                    .id(string())
+                    .type(optional(string(), Company.Type::valueOf))
+                    .corporateId(string())
+                    .aquisitionNumber(integer())
+                    .sniCode(string());
+            if (flag()) {
+                builder.address(Address.builder()
+                        .contact(string())
+                        .streetAddress(string())
+                        .postalAddress(string())
+                        .phone(string())
+                        .apply());
+            }
+            return builder.apply();
+        }
+
+        private AccountingPlan accountingPlan() {
+            return AccountingPlan.builder()
+                    .type(string())
+                    .accounts(list(this::account))
+                    .apply();
+        }
+
+        private Account account() {
+            Account.Builder builder = Account.builder(requiredString())
+                    .label(string())
+                    .type(optional(string(), Account.Type::valueOf))
+                    .unit(string());
+            for (int i = length(); i > 0; i--) {
+                builder.addSruCode(string());
+            }
+            for (int i = length(); i > 0; i--) {
+                builder.addOpeningBalance(Balance.of(amount(), integer()));
+            }
+            for (int i = length(); i > 0; i--) {
+                builder.addClosingBalance(Balance.of(amount(), integer()));
+            }
+            for (int i = length(); i > 0; i--) {
+                builder.addResult(Balance.of(amount(), integer()));
+            }
+            for (int i = length(); i > 0; i--) {
+                builder.addObjectOpeningBalance(objectBalance());
+            }
+            for (int i = length(); i > 0; i--) {
+                builder.addObjectClosingBalance(objectBalance());
+            }
+            for (int i = length(); i > 0; i--) {
+                builder.addPeriodicalBudget(PeriodicalBudget.of(integer(), period(), amount()));
+            }
+            for (int i = length(); i > 0; i--) {
+                PeriodicalBalance.Builder balance = PeriodicalBalance.builder()
+                        .yearIndex(integer())
+                        .period(period());
+                if (flag()) {
+                    balance.objectId(objectId());
+                }
+                builder.addPeriodicalBalance(balance.amount(amount())
+                        .quantity(quantity())
+                        .apply());
+            }
+            return builder.apply();
+        }
+
+        private ObjectBalance objectBalance() {
+            return ObjectBalance.builder()
+                    .amount(amount())
+                    .yearIndex(integer())
+                    .objectId(objectId())
+                    .quantity(quantity())
+                    .apply();
+        }
+
+        private Account.ObjectId objectId() {
+            return Account.ObjectId.of(integer(), string());
+        }
+
+        private Voucher voucher() {
+            Voucher.Builder builder = Voucher.builder()
+                    .series(string())
+                    .number(integer())
+                    .date(date())
+                    .text(string())
+                    .registrationDate(date())
+                    .signature(string());
+            for (int i = length(); i > 0; i--) {
+                Transaction.Builder transaction = Transaction.builder()
+                        .accountNumber(string())
+                        .amount(amount())
+                        .date(date())
+                        .text(string())
+                        .quantity(quantity())
+                        .signature(string());
+                for (int j = length(); j > 0; j--) {
+                    transaction.addObjectId(objectId());
+                }
+                builder.addTransaction(transaction.apply());
+            }
+            return builder.apply();
+        }
+
+        private <T> List<T> list(Supplier<T> element) {
+            int length = length();
+            List<T> list = new ArrayList<>(Math.min(length, source.length - position));
+            for (int i = 0; i < length; i++) {
+                list.add(element.get());
+            }
+            return list;
+        }
+
+        private static <T> T optional(String value, Function<String, T> mapper) {
+            return value == null ? null : mapper.apply(value);
+        }
+
+        private boolean flag() {
+            return varint() != 0;
+        }
+
+        private String string() {
+            long index = varint();
+            return index == 0 ? null : strings[Math.toIntExact(index - 1)];
+        }
+
+        private String requiredString() {
+            String value = string();
+            if (value == null) {
+                throw new InvalidSnapshotException("Ögonblicksbilden är skadad");
+            }
+            return value;
+        }
+
+        private Integer integer() {
+            long value = varint();
+            return value == 0 ? null : Math.toIntExact(unzigzag(value - 1));
+        }
+
+        private LocalDate date() {
+            long value = varint();
+            return value == 0 ? null : LocalDate.ofEpochDay(unzigzag(value - 1));
+        }
+
+        private YearMonth period() {
+            long value = varint();
+            if (value == 0) {
+                return null;
+            }
+            long months = unzigzag(value - 1);
+            return YearMonth.of(Math.toIntExact(Math.floorDiv(months, 12)), Math.floorMod(months, 12) + 1);
+        }
+
+        private Double quantity() {
+            if (!flag()) {
+                return null;
+            }
+            long bits = 0;
+            for (int i = 0; i < 8; i++) {
+                bits = bits << 8 | (source[position++] & 0xFF);
+            }
+            return Double.longBitsToDouble(bits);
+        }
+
+        private BigDecimal amount() {
+            long header = varint();
+            if (header == 0) {
+                return null;
+            }
+            long scale = unzigzag((header - 1) >>> 1);
+            if (Math.abs(scale) > MAX_SCALE) {
+                throw new InvalidSnapshotException("Ögonblicksbilden är skadad");
+            }
+            if (((header - 1) & 1) == COMPACT) {
+                return BigDecimal.valueOf(unzigzag(varint()), (int) scale);
+            }
+            int length = length();
+            BigInteger unscaled = new BigInteger(source, position, length);
+            position += length;
+            return new BigDecimal(unscaled, (int) scale);
+        }
+
+        private int length() {
+            long length = varint();
+            if (length > source.length - position) {
+                throw new InvalidSnapshotException("Ögonblicksbilden är skadad");
+            }
+            return (int) length;
+        }
+
+        private static long unzigzag(long value) {
+            return (value >>> 1) ^ -(value & 1);
+        }
+
+        private long varint() {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                byte b = source[position++];
+                value |= (long) (b & 0x7F) << shift;
+                if (b >= 0) {
+                    return value;
+                }
+            }
+            throw new InvalidSnapshotException("Ögonblicksbilden är skadad");
+        }
+    }
+}
@@ -1,7 +1,6 @@
 package sie;
 
 import java.util.*;
-import java.util.stream.*;
 
 /**
  *
@@ -14,33 +13,199 @@ class StringUtil {
     }
 
     public static List<String> getParts(String line) {
-        List<String> result = new ArrayList<>();
-        String[] chars = line.replaceAll("\\s+", " ").split("");
+        return tokenize(line);
+    }
+
+    /**
+     * Splits a line into its parts by scanning it once, char by char.
+     * <p>
+     * Parts are separated by whitespace outside quotes, inline quotes and
+     * object lists. Whitespace runs within a part are collapsed to a single
+     * space. Only the offsets of the parts are recorded while scanning, the
+     * strings are created when asked for. The last part is always the
+     * original line.
+     *
+     * @param line the line to split
+     * @return the parts of the line, followed by the line itself
+     */
+    static Parts tokenize(CharSequence line) {
+        int length = line.length();
+        int[] offsets = new int[16];
+        int count = 0;
+        int partStart = 0;
         boolean quote = false;
         boolean inlineQuote = false;
         boolean objArray = false;
-        StringBuilder builder = new StringBuilder();
-        for (String c : chars) {
-            if (c.equals("\"")) {
-                quote = !quote;
-            }
-            if (c.equals("\\")) {
-                inlineQuote = !inlineQuote;
+        int i = 0;
+        while (i < length) {
+            char c = line.charAt(i);
+            if (isWhitespace(c)) {
+                if (!quote && !inlineQuote && !objArray) {
+                    if (count + 2 > offsets.length) {
+                        offsets = Arrays.copyOf(offsets, offsets.length * 2);
+                    }
+                    offsets[count++] = partStart;
+                    offsets[count++] = i;
+                    partStart = i;
+                }
+                while (i < length && isWhitespace(line.charAt(i))) {
+                    i++;
+                }
+                continue;
             }
-            if (c.equals("{")) {
-                objArray = true;
+            switch (c) {
+                case '"':
+                    quote = !quote;
+                    break;
+                case '\\':
+                    inlineQuote = !inlineQuote;
+                    break;
+                case '{':
+                    objArray = true;
+                    break;
+                case '}':
+                    objArray = false;
+                    break;
             }
-            if (c.equals("}")) {
-                objArray = false;
+            i++;
+        }
+        if (count + 2 > offsets.length) {
+            offsets = Arrays.copyOf(offsets, count + 2);
+        }
+        offsets[count++] = partStart;
+        offsets[count++] = length;
+        for (int p = 0; p < count; p += 2) {
+            int start = offsets[p];
+            int end = offsets[p + 1];
+            while (start < end && line.charAt(start) <= ' ') {
+                start++;
             }
-            if (!quote && !inlineQuote && !objArray && (c.equals(" ") || c.equals("\t"))) {
-                builder.append("\n");
+            while (end > start && line.charAt(end - 1) <= ' ') {
+                end--;
             }
-            builder.append(c);
+            offsets[p] = start;
+            offsets[p + 1] = end;
         }
-        result.addAll(Stream.of(builder.toString().split("\n")).map(String::trim).toList());
-        result.add(line);
-        return result;
+        return new Parts(line, offsets, count / 2);
     }
 
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+
+    /**
+     * The parts of a tokenized line, as offsets into the line.
+     */
+    static final class Parts extends AbstractList<String> implements RandomAccess {
+
+        private final CharSequence line;
+        private final int[] offsets;
+        private final int fields;
+        private final String[] values;
+
+        private Parts(CharSequence line, int[] offsets, int fields) {
+            this.line = line;
+            this.offsets = offsets;
+            this.fields = fields;
+            this.values = new String[fields + 1];
+        }
+
+        /**
+         * @return the number of parts, not counting the trailing line
+         */
+        int fields() {
+            return fields;
+        }
+
+        /**
+         * @param index the index of the part
+         * @return the offset in the line where the part starts
+         */
+        int start(int index) {
+            Objects.checkIndex(index, fields);
+            return offsets[index * 2];
+        }
+
+        /**
+         * @param index the index of the part
+         * @return the offset in the line where the part ends, exclusive
+         */
+        int end(int index) {
+            Objects.checkIndex(index, fields);
+            return offsets[index * 2 + 1];
+        }
+
+        CharSequence line() {
+            return line;
+        }
+
+        /**
+         * The part without creating a string, as long as it has no whitespace
+         * to collapse.
+         *
+         * @param index the index of the part
+         * @return the part
+         */
+        CharSequence field(int index) {
+            Objects.checkIndex(index, fields + 1);
+            if (values[index] != null || index == fields || needsCollapse(index)) {
+                return get(index);
+            }
+            return line.subSequence(offsets[index * 2], offsets[index * 2 + 1]);
+        }
+
+        @Override
+        public String get(int index) {
+            Objects.checkIndex(index, fields + 1);
+            String value = values[index];
+            if (value == null) {
+                value = index == fields ? line.toString() : part(index);
+                values[index] = value;
+            }
+            return value;
+        }
+
+        @Override
+        public int size() {
+            return fields + 1;
+        }
+
+        private String part(int index) {
+            int start = offsets[index * 2];
+            int end = offsets[index * 2 + 1];
+            if (needsCollapse(index)) {
+                return collapse(start, end);
+            }
+            return line.subSequence(start, end).toString();
+        }
+
+        private boolean needsCollapse(int index) {
+            int end = offsets[index * 2 + 1];
+            for (int i = offsets[index * 2]; i < end; i++) {
+                char c = line.charAt(i);
+                if (c != ' ' && isWhitespace(c) || c == ' ' && isWhitespace(line.charAt(i + 1))) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private String collapse(int start, int end) {
+            StringBuilder builder = new StringBuilder(end - start);
+            int i = start;
+            while (i < end) {
+                char c = line.charAt(i);
+                if (isWhitespace(c)) {
+                    builder.append(' ');
+                    while (i < end && isWhitespace(line.charAt(i))) {
+                        i++;
+                    }
+                } else {
+                    builder.append(c);
+                    i++;
+                }
+            }
+            return builder.toString();
+        }
+    }
 }
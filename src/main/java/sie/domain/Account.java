@@ -153,7 +153,7 @@ public final class Account implements Entity, Comparable<Account> {
      * @return List of SRU codes
      */
     public List<String> sruCodes() {
-        return new ArrayList<>(sruCodes);
+        return sruCodes;
     }
 
     /**
@@ -169,7 +169,7 @@ public final class Account implements Entity, Comparable<Account> {
      * @return List of opening balances
      */
     public List<Balance> openingBalances() {
-        return new ArrayList<>(openingBalances);
+        return openingBalances;
     }
 
     /**
@@ -202,7 +202,7 @@ public final class Account implements Entity, Comparable<Account> {
      * @return List of opening balances
      */
     public List<Balance> closingBalances() {
-        return new ArrayList<>(closingBalances);
+        return closingBalances;
     }
 
     /**
@@ -235,7 +235,7 @@ public final class Account implements Entity, Comparable<Account> {
      * @return List of results
      */
     public List<Balance> results() {
-        return new ArrayList<>(results);
+        return results;
     }
 
     /**
@@ -255,11 +255,11 @@ public final class Account implements Entity, Comparable<Account> {
     }
 
     public List<ObjectBalance> objectOpeningBalances() {
-        return new ArrayList<>(objectOpeningBalances);
+        return objectOpeningBalances;
     }
 
     public List<ObjectBalance> optObjectClosingBalances() {
-        return new ArrayList<>(objectClosingBalances);
+        return objectClosingBalances;
     }
 
     /**
@@ -271,11 +271,11 @@ public final class Account implements Entity, Comparable<Account> {
      * @return List of periodical budgets
      */
     public List<PeriodicalBudget> getPeriodicalBudgets() {
-        return periodicalBudgets.stream().sorted().collect(Collectors.toList());
+        return periodicalBudgets;
     }
 
     public List<PeriodicalBalance> periodicalBalances() {
-        return new ArrayList<>(periodicalBalances);
+        return periodicalBalances;
     }
 
     @Override
@@ -565,10 +565,10 @@ public final class Account implements Entity, Comparable<Account> {
          * @return Account representing the data in the builder.
          */
         public Account apply() {
-            return new Account(number, label, type, unit, sruCodes,
-                    openingBalances, closingBalances, results,
-                    objectOpeningBalances, objectClosingBalances,
-                    periodicalBudgets, periodicalBalances);
+            return new Account(number, label, type, unit, Lists.freeze(sruCodes),
+                    Lists.freeze(openingBalances), Lists.freeze(closingBalances), Lists.freeze(results),
+                    Lists.freeze(objectOpeningBalances), Lists.freeze(objectClosingBalances),
+                    Lists.freezeSorted(periodicalBudgets), Lists.freeze(periodicalBalances));
         }
 
     }
@@ -1,7 +1,6 @@
 package sie.domain;
 
 import java.util.*;
-import java.util.stream.Collectors;
 
 /**
  *
@@ -12,10 +11,28 @@ public final class AccountingPlan implements Entity {
 
     private final String type;
     private final List<Account> accounts;
+    private final List<Account> sorted;
+    private final Map<String, Account> byNumber;
+    private final Account[] numeric;
+    private final long[] numbers;
 
+    /**
+     * The accounts are kept in the order given, for equality, and are indexed
+     * once: sorted, by number and sorted by number as an integer.
+     */
     private AccountingPlan(String type, List<Account> accounts) {
         this.type = type;
-        this.accounts = accounts;
+        this.accounts = Collections.unmodifiableList(new ArrayList<>(accounts));
+        Account[] array = accounts.toArray(Account[]::new);
+        Arrays.sort(array);
+        this.sorted = Collections.unmodifiableList(Arrays.asList(array));
+        this.byNumber = new HashMap<>(Math.max(16, array.length * 2));
+        accounts.forEach(account -> byNumber.putIfAbsent(account.number(), account));
+        this.numeric = Arrays.stream(array)
+                .filter(account -> numberAsLong(account) >= 0)
+                .sorted(Comparator.comparingLong(AccountingPlan::numberAsLong))
+                .toArray(Account[]::new);
+        this.numbers = Arrays.stream(numeric).mapToLong(AccountingPlan::numberAsLong).toArray();
     }
 
     /**
@@ -47,13 +64,14 @@ public final class AccountingPlan implements Entity {
     /**
      * Getter for the accounts.
      * <p>
-     * Returns a list of the accounts used in the document. If no accounts are
-     * present, an empty list will be returned.
+     * Returns a list of the accounts used in the document, sorted by number.
+     * If no accounts are present, an empty list will be returned. The list
+     * cannot be changed.
      *
      * @return List Account - The accounts used in the document.
      */
     public List<Account> accounts() {
-        return accounts.stream().sorted().collect(Collectors.toList());
+        return sorted;
     }
 
     /**
@@ -67,7 +85,7 @@ public final class AccountingPlan implements Entity {
      * optional if not found.
      */
     public Optional<Account> optAccountByNumber(String number) {
-        return accounts.stream().filter(a -> a.number().equals(number)).findFirst();
+        return Optional.ofNullable(byNumber.get(number));
     }
 
     /**
@@ -84,6 +102,61 @@ public final class AccountingPlan implements Entity {
         return AccountingPlan.this.optAccountByNumber(number.toString());
     }
 
+    /**
+     * Getter for the accounts in a range of numbers.
+     * <p>
+     * Returns the accounts with numbers from and including the first number
+     * to and including the last, e.g. accountsBetween(3000, 3999) for the
+     * revenue accounts of BAS, in the order of their numbers. Accounts with
+     * numbers that are not digits only are never included.
+     *
+     * @param from the lowest number
+     * @param to the highest number
+     * @return List of the accounts in the range
+     */
+    public List<Account> accountsBetween(long from, long to) {
+        int first = firstIndexOf(from);
+        int last = firstIndexOf(to == Long.MAX_VALUE ? to : to + 1);
+        if (first >= last) {
+            return List.of();
+        }
+        return Collections.unmodifiableList(Arrays.asList(numeric).subList(first, last));
+    }
+
+    private int firstIndexOf(long number) {
+        int low = 0;
+        int high = numbers.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (numbers[middle] < number) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * @return the number as a long, or -1 if it is not made of digits only or
+     * is too long
+     */
+    private static long numberAsLong(Account account) {
+        String number = account.number();
+        if (number.isEmpty() || number.length() > 18) {
+            return -1;
+        }
+        long value = 0;
+        for (int i = 0; i < number.length(); i++) {
+            char c = number.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
     @Override
     public String toString() {
         return "AccountingPlan{" + "accounts=" + accounts + '}';
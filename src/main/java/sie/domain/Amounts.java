@@ -0,0 +1,93 @@
+package sie.domain;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.Objects;
+import java.util.function.ToLongFunction;
+
+/**
+ * Amounts as a primitive long in hundredths, e.g. öre.
+ * <p>
+ * Transactions and balances hold their amount in hundredths next to the
+ * amount they were given, rounded the same way as their
+ * <code>amount()</code>. Sums in hundredths are exact, unlike sums of
+ * doubles, and do not allocate, unlike sums of BigDecimals.
+ *
+ * @author Håkan Lidén
+ */
+public final class Amounts {
+
+    /**
+     * Marks an amount that is missing, or too large to be held in hundredths
+     * as a long.
+     */
+    static final long NONE = Long.MIN_VALUE;
+
+    private Amounts() {
+    }
+
+    /**
+     * @param hundredths the amount in hundredths
+     * @return the amount, with a scale of two
+     */
+    public static BigDecimal of(long hundredths) {
+        return BigDecimal.valueOf(hundredths, Entity.SCALE);
+    }
+
+    /**
+     * The exact sum of the amounts, in hundredths.
+     *
+     * @param <T> the type of the items
+     * @param items the items to sum
+     * @param hundredths the amount of an item, in hundredths
+     * @return the sum in hundredths
+     * @throws ArithmeticException if the sum does not fit in a long
+     */
+    public static <T> long sum(Collection<? extends T> items, ToLongFunction<? super T> hundredths) {
+        long sum = 0;
+        for (T item : items) {
+            sum = Math.addExact(sum, hundredths.applyAsLong(item));
+        }
+        return sum;
+    }
+
+    static long hundredths(BigDecimal amount) {
+        if (amount == null) {
+            return NONE;
+        }
+        BigDecimal scaled = scaled(amount);
+        if (scaled.precision() > 18) {
+            return NONE;
+        }
+        return scaled.unscaledValue().longValue();
+    }
+
+    /**
+     * @param hundredths the amount in hundredths, or {@link #NONE}
+     * @param amount the amount as given
+     * @return the amount in hundredths
+     * @throws NullPointerException if the amount is missing
+     * @throws ArithmeticException if the amount is too large
+     */
+    static long hundredths(long hundredths, BigDecimal amount) {
+        if (hundredths != NONE) {
+            return hundredths;
+        }
+        return Objects.requireNonNull(amount, "amount").setScale(Entity.SCALE, Entity.ROUNDING_MODE)
+                .unscaledValue().longValueExact();
+    }
+
+    /**
+     * The amount with a scale of two. An amount that already has that scale
+     * is returned as it is, without creating a new BigDecimal.
+     *
+     * @param amount the amount as given, may be null
+     * @return the amount with a scale of two
+     */
+    static BigDecimal scaled(BigDecimal amount) {
+        if (amount == null || amount.scale() == Entity.SCALE) {
+            return amount;
+        }
+        return amount.setScale(Entity.SCALE, Entity.ROUNDING_MODE);
+    }
+}
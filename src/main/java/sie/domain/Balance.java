@@ -20,11 +20,13 @@ public final class Balance implements Entity {
 
     private final String line;
     private final BigDecimal amount;
+    private final long hundredths;
     private final Integer yearIndex;
 
     private Balance(String line, BigDecimal amount, Integer yearIndex) {
         this.line = line;
         this.amount = Objects.requireNonNull(amount);
+        this.hundredths = Amounts.hundredths(this.amount);
         this.yearIndex = Objects.requireNonNull(yearIndex);
     }
 
@@ -62,7 +64,17 @@ public final class Balance implements Entity {
      * @return BigDecimal - the Amount for the balance/result
      */
     public BigDecimal amount() {
-        return amount.setScale(SCALE, ROUNDING_MODE);
+        return Amounts.scaled(amount);
+    }
+
+    /**
+     * Getter for the amount in hundredths, rounded as {@link #amount()}.
+     *
+     * @return the amount in hundredths
+     * @throws ArithmeticException if the amount does not fit in a long
+     */
+    public long amountInHundredths() {
+        return Amounts.hundredths(hundredths, amount);
     }
 
     /**
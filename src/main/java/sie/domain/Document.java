@@ -1,7 +1,9 @@
 package sie.domain;
 
+import java.time.LocalDate;
 import java.util.*;
 import java.util.stream.Collectors;
+import sie.SectionChecksums;
 import sie.Sie4j;
 import sie.exception.*;
 
@@ -17,17 +19,21 @@ public final class Document implements Entity {
     private final List<Voucher> vouchers;
     private final List<AccountingDimension> dimensions;
     private final List<AccountingObject> objects;
-    private final String checksum;
+    private final boolean calculateChecksum;
+    private volatile String checksum;
+    private volatile SectionChecksums sectionChecksums;
+    private volatile VoucherIndex voucherIndex;
 
     private Document(MetaData metaData, AccountingPlan accountingPlan,
             List<Voucher> vouchers, List<AccountingDimension> dimensions,
-            List<AccountingObject> objects, String checksum) {
+            List<AccountingObject> objects, String checksum, boolean calculateChecksum) {
         this.metaData = metaData;
         this.accountingPlan = accountingPlan;
         this.vouchers = vouchers;
         this.dimensions = dimensions;
         this.objects = objects;
         this.checksum = checksum;
+        this.calculateChecksum = calculateChecksum;
     }
 
     public static Builder builder() {
@@ -47,8 +53,77 @@ public final class Document implements Entity {
         return Optional.ofNullable(accountingPlan);
     }
 
+    /**
+     * The vouchers, sorted by series, number and date. The list is sorted
+     * the first time it is asked for and cannot be changed.
+     *
+     * @return the vouchers
+     */
     public List<Voucher> vouchers() {
-        return vouchers.stream().sorted().collect(Collectors.toList());
+        return voucherIndex().sorted();
+    }
+
+    /**
+     * The voucher with the series and number. A blank series is the same as
+     * none.
+     *
+     * @param series the series of the voucher, may be null
+     * @param number the number of the voucher, may be null
+     * @return the voucher, or an empty optional if there is none
+     */
+    public Optional<Voucher> optVoucher(String series, Integer number) {
+        return voucherIndex().bySeriesAndNumber(series, number);
+    }
+
+    /**
+     * The vouchers dated from and including the first date to and including
+     * the last, sorted by date.
+     *
+     * @param from the first date
+     * @param to the last date
+     * @return the vouchers in the range
+     * @throws NullPointerException if from or to is null
+     */
+    public List<Voucher> vouchersBetween(LocalDate from, LocalDate to) {
+        return voucherIndex().between(Objects.requireNonNull(from, "from"), Objects.requireNonNull(to, "to"));
+    }
+
+    /**
+     * The transactions on the account, in the order of the vouchers.
+     *
+     * @param accountNumber the number of the account
+     * @return the transactions on the account
+     */
+    public List<Transaction> transactionsByAccount(String accountNumber) {
+        return voucherIndex().byAccount(accountNumber);
+    }
+
+    /**
+     * The transactions on the account dated from and including the first
+     * date to and including the last, sorted by date. A transaction without
+     * a date of its own has the date of its voucher.
+     *
+     * @param accountNumber the number of the account
+     * @param from the first date
+     * @param to the last date
+     * @return the transactions on the account in the range
+     * @throws NullPointerException if from or to is null
+     */
+    public List<Transaction> transactionsByAccount(String accountNumber, LocalDate from, LocalDate to) {
+        return voucherIndex().byAccount(accountNumber, Objects.requireNonNull(from, "from"), Objects.requireNonNull(to, "to"));
+    }
+
+    /**
+     * The indexes are built the first time they are needed. Should two
+     * threads build them at once, both get the same content.
+     */
+    private VoucherIndex voucherIndex() {
+        VoucherIndex result = voucherIndex;
+        if (result == null) {
+            result = new VoucherIndex(vouchers);
+            voucherIndex = result;
+        }
+        return result;
     }
 
     public List<Voucher> imbalancedVouchers() {
@@ -60,11 +135,11 @@ public final class Document implements Entity {
     }
 
     public List<AccountingDimension> dimensions() {
-        return new ArrayList<>(dimensions);
+        return dimensions;
     }
 
     public List<AccountingObject> objects() {
-        return new ArrayList<>(objects);
+        return objects;
     }
 
     public List<AccountingObject> costCentres() {
@@ -79,8 +154,37 @@ public final class Document implements Entity {
         return objects().stream().filter(obj -> obj.dimensionId().equals(AccountingDimension.PROJECT)).collect(Collectors.toList());
     }
 
+    /**
+     * The checksum is calculated the first time it is asked for, unless it was
+     * given to or turned off in the builder.
+     *
+     * @return the checksum
+     */
     public Optional<String> optChecksum() {
-        return Optional.ofNullable(checksum);
+        String result = checksum;
+        if (result == null && calculateChecksum) {
+            // The document is rendered without its checksum, so this is not
+            // called again while calculating
+            result = Sie4j.calculateChecksum(this);
+            checksum = result;
+        }
+        return Optional.ofNullable(result);
+    }
+
+    /**
+     * The checksums of the sections of the document, calculated the first
+     * time they are asked for, or when the document is built if section
+     * checksums of an earlier document were given to the builder.
+     *
+     * @return the section checksums
+     */
+    public SectionChecksums sectionChecksums() {
+        SectionChecksums result = sectionChecksums;
+        if (result == null) {
+            result = Sie4j.calculateSectionChecksums(this, null);
+            sectionChecksums = result;
+        }
+        return result;
     }
 
     @Override
@@ -99,7 +203,7 @@ public final class Document implements Entity {
         hash = 79 * hash + Objects.hashCode(this.vouchers);
         hash = 79 * hash + Objects.hashCode(this.dimensions);
         hash = 79 * hash + Objects.hashCode(this.objects);
-        hash = 79 * hash + Objects.hashCode(this.checksum);
+        hash = 79 * hash + Objects.hashCode(optChecksum().orElse(null));
         return hash;
     }
 
@@ -115,9 +219,6 @@ public final class Document implements Entity {
             return false;
         }
         final Document other = (Document) obj;
-        if (!Objects.equals(this.checksum, other.checksum)) {
-            return false;
-        }
         if (!Objects.equals(this.metaData, other.metaData)) {
             return false;
         }
@@ -130,7 +231,11 @@ public final class Document implements Entity {
         if (!Objects.equals(this.dimensions, other.dimensions)) {
             return false;
         }
-        return Objects.equals(this.objects, other.objects);
+        if (!Objects.equals(this.objects, other.objects)) {
+            return false;
+        }
+        // Compared last, as it may have to be calculated
+        return Objects.equals(this.optChecksum(), other.optChecksum());
     }
 
     public static class Builder {
@@ -141,6 +246,8 @@ public final class Document implements Entity {
         private List<AccountingDimension> dimensions = new ArrayList<>();
         private List<AccountingObject> objects = new ArrayList<>();
         private String checksum;
+        private boolean calculateChecksum = true;
+        private SectionChecksums sectionChecksums;
 
         private Builder() {
         }
@@ -175,11 +282,45 @@ public final class Document implements Entity {
             return this;
         }
 
+        /**
+         * Whether or not a checksum should be calculated, when none is given.
+         * <p>
+         * Default is true. The checksum is calculated the first time it is
+         * asked for.
+         *
+         * @param calculateChecksum false to leave the checksum empty
+         * @return the builder
+         */
+        public Builder calculateChecksum(boolean calculateChecksum) {
+            this.calculateChecksum = calculateChecksum;
+            return this;
+        }
+
+        /**
+         * Section checksums of an earlier document to use again, for the
+         * sections that are made of the same instances in this document.
+         * <p>
+         * The section checksums of the new document are then calculated when
+         * it is built, so that it does not hold on to the earlier ones. Section
+         * checksums keep the instances they were calculated from, and keep the
+         * entities of their document from being collected for as long as they
+         * are held.
+         *
+         * @param sectionChecksums the section checksums of an earlier document
+         * @return the builder
+         */
+        public Builder sectionChecksums(SectionChecksums sectionChecksums) {
+            this.sectionChecksums = sectionChecksums;
+            return this;
+        }
+
         public Document apply() {
-            if (checksum == null) {
-                checksum = Sie4j.calculateChecksum(new Document(metaData, accountingPlan, vouchers, dimensions, objects, null));
+            Document document = new Document(metaData, accountingPlan, Lists.freeze(vouchers), Lists.freeze(dimensions),
+                    Lists.freeze(objects), checksum, calculateChecksum);
+            if (sectionChecksums != null) {
+                document.sectionChecksums = Sie4j.calculateSectionChecksums(document, sectionChecksums);
             }
-            return new Document(metaData, accountingPlan, vouchers, dimensions, objects, checksum);
+            return document;
         }
     }
 
@@ -0,0 +1,32 @@
+package sie.domain;
+
+import java.util.*;
+
+/**
+ * The lists of the entities are copied once, when the entity is built, and
+ * are handed out as views that cannot be changed. A missing list is the same
+ * as an empty list.
+ *
+ * @author Håkan Lidén
+ */
+final class Lists {
+
+    private Lists() {
+    }
+
+    static <T> List<T> freeze(Collection<T> source) {
+        if (source == null) {
+            return List.of();
+        }
+        return Collections.unmodifiableList(new ArrayList<>(source));
+    }
+
+    static <T extends Comparable<? super T>> List<T> freezeSorted(Collection<T> source) {
+        if (source == null) {
+            return List.of();
+        }
+        List<T> copy = new ArrayList<>(source);
+        Collections.sort(copy);
+        return Collections.unmodifiableList(copy);
+    }
+}
@@ -3,7 +3,6 @@ package sie.domain;
 import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 import java.time.*;
 import java.util.*;
-import java.util.stream.Collectors;
 import sie.io.*;
 
 /**
@@ -111,7 +110,7 @@ public final class MetaData implements Entity {
     }
 
     public List<FinancialYear> financialYears() {
-        return financialYears.stream().sorted().collect(Collectors.toList());
+        return financialYears;
     }
 
     public Optional<FinancialYear> optFinancialYearByIndex(Integer index) {
@@ -370,7 +369,7 @@ public final class MetaData implements Entity {
          */
         public MetaData apply() {
             return new MetaData(read, program, generated, sieType, comments,
-                    company, taxationYear, financialYears, periodRange, currency);
+                    company, taxationYear, Lists.freezeSorted(financialYears), periodRange, currency);
         }
     }
 }
@@ -20,6 +20,7 @@ public final class ObjectBalance implements Entity {
 
     private final String line;
     private final BigDecimal amount;
+    private final long hundredths;
     private final Integer yearIndex;
     private final ObjectId objectId;
     private final Double quantity;
@@ -31,6 +32,7 @@ public final class ObjectBalance implements Entity {
             Double quantity) {
         this.line = line;
         this.amount = Objects.requireNonNull(amount);
+        this.hundredths = Amounts.hundredths(this.amount);
         this.yearIndex = Objects.requireNonNull(yearIndex);
         this.objectId = Objects.requireNonNull(objectId);
         this.quantity = quantity;
@@ -51,7 +53,17 @@ public final class ObjectBalance implements Entity {
      * @return BigDecimal - the Amount for the balance/result
      */
     public BigDecimal amount() {
-        return amount.setScale(SCALE, ROUNDING_MODE);
+        return Amounts.scaled(amount);
+    }
+
+    /**
+     * Getter for the amount in hundredths, rounded as {@link #amount()}.
+     *
+     * @return the amount in hundredths
+     * @throws ArithmeticException if the amount does not fit in a long
+     */
+    public long amountInHundredths() {
+        return Amounts.hundredths(hundredths, amount);
     }
 
     /**
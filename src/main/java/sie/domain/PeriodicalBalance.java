@@ -16,6 +16,7 @@ public final class PeriodicalBalance implements Entity {
     private final YearMonth period;
     private final ObjectId objectId;
     private final BigDecimal amount;
+    private final long hundredths;
     private final Double quantity;
 
     private PeriodicalBalance(String line,
@@ -29,6 +30,7 @@ public final class PeriodicalBalance implements Entity {
         this.period = period;
         this.objectId = objectId;
         this.amount = amount;
+        this.hundredths = Amounts.hundredths(this.amount);
         this.quantity = quantity;
     }
 
@@ -57,6 +59,18 @@ public final class PeriodicalBalance implements Entity {
         return amount;
     }
 
+    /**
+     * Getter for the amount in hundredths, rounded half up to two
+     * decimals.
+     *
+     * @return the amount in hundredths
+     * @throws NullPointerException if the amount is missing
+     * @throws ArithmeticException if the amount does not fit in a long
+     */
+    public long amountInHundredths() {
+        return Amounts.hundredths(hundredths, amount);
+    }
+
     public Optional<Double> optQuantity() {
         return Optional.ofNullable(quantity);
     }
@@ -18,6 +18,7 @@ public final class PeriodicalBudget implements Entity, Comparable<PeriodicalBudg
     @JsonSerialize(using = YearMonthSerializer.class)
     private final YearMonth period;
     private final BigDecimal amount;
+    private final long hundredths;
 
     private PeriodicalBudget(String line,
             Integer yearIndex,
@@ -27,6 +28,7 @@ public final class PeriodicalBudget implements Entity, Comparable<PeriodicalBudg
         this.yearIndex = yearIndex;
         this.period = period;
         this.amount = amount;
+        this.hundredths = Amounts.hundredths(this.amount);
     }
 
     public static PeriodicalBudget of(Integer yearIndex, YearMonth period, BigDecimal amount) {
@@ -51,7 +53,17 @@ public final class PeriodicalBudget implements Entity, Comparable<PeriodicalBudg
     }
 
     public BigDecimal amount() {
-        return amount.setScale(SCALE, ROUNDING_MODE);
+        return Amounts.scaled(amount);
+    }
+
+    /**
+     * Getter for the amount in hundredths, rounded as {@link #amount()}.
+     *
+     * @return the amount in hundredths
+     * @throws ArithmeticException if the amount does not fit in a long
+     */
+    public long amountInHundredths() {
+        return Amounts.hundredths(hundredths, amount);
     }
 
     @Override
@@ -18,6 +18,7 @@ public final class Transaction implements Entity {
     private final String line;
     private final String accountNumber;
     private final BigDecimal amount;
+    private final long hundredths;
     @JsonSerialize(using = LocalDateSerializer.class)
     private final LocalDate date;
     private final String text;
@@ -36,6 +37,7 @@ public final class Transaction implements Entity {
         this.line = line;
         this.accountNumber = accountNumber;
         this.amount = amount;
+        this.hundredths = Amounts.hundredths(this.amount);
         this.date = date;
         this.text = text;
         this.quantity = quantity;
@@ -57,10 +59,18 @@ public final class Transaction implements Entity {
     }
 
     public BigDecimal amount() {
-        if (amount == null) {
-            return null;
-        }
-        return amount.setScale(SCALE, ROUNDING_MODE);
+        return Amounts.scaled(amount);
+    }
+
+    /**
+     * Getter for the amount in hundredths, rounded as {@link #amount()}.
+     *
+     * @return the amount in hundredths
+     * @throws NullPointerException if the amount is missing
+     * @throws ArithmeticException if the amount does not fit in a long
+     */
+    public long amountInHundredths() {
+        return Amounts.hundredths(hundredths, amount);
     }
 
     public LocalDate date() {
@@ -80,7 +90,7 @@ public final class Transaction implements Entity {
     }
 
     public List<ObjectId> objectIds() {
-        return new ArrayList<>(objectIds);
+        return objectIds;
     }
 
     public List<String> costCentreIds() {
@@ -218,7 +228,7 @@ public final class Transaction implements Entity {
         }
 
         public Transaction apply() {
-            return new Transaction(line, accountNumber, amount, date, text, quantity, signature, objectIds);
+            return new Transaction(line, accountNumber, amount, date, text, quantity, signature, Lists.freeze(objectIds));
         }
     }
 
@@ -80,17 +80,44 @@ public final class Voucher implements Entity, Comparable<Voucher> {
     }
 
     public List<Transaction> transactions() {
-        return new ArrayList<>(transactions);
+        return transactions;
     }
 
     public Boolean balanced() {
-        return diff().equals(BigDecimal.ZERO.setScale(Entity.SCALE));
+        try {
+            return diffInHundredths() == 0;
+        } catch (ArithmeticException ex) {
+            return diff().signum() == 0;
+        }
     }
 
+    /**
+     * The sum of the amounts of the transactions, which is zero for a
+     * balanced voucher.
+     * <p>
+     * The sum is exact, of the amounts rounded to two decimals.
+     *
+     * @return the sum of the transactions
+     */
     public BigDecimal diff() {
-        return new BigDecimal(transactions().stream()
-                .mapToDouble(t -> t.amount().doubleValue()).sum())
-                .setScale(Entity.SCALE, Entity.ROUNDING_MODE);
+        try {
+            return Amounts.of(diffInHundredths());
+        } catch (ArithmeticException ex) {
+            return transactions.stream().map(Transaction::amount).reduce(BigDecimal.ZERO, BigDecimal::add)
+                    .setScale(Entity.SCALE, Entity.ROUNDING_MODE);
+        }
+    }
+
+    /**
+     * The sum of the amounts of the transactions in hundredths.
+     *
+     * @see #diff()
+     * @return the sum of the transactions in hundredths
+     * @throws ArithmeticException if an amount or the sum does not fit in a
+     * long
+     */
+    public long diffInHundredths() {
+        return Amounts.sum(transactions, Transaction::amountInHundredths);
     }
 
     @Override
@@ -221,7 +248,7 @@ public final class Voucher implements Entity, Comparable<Voucher> {
         }
 
         public Voucher apply() {
-            return new Voucher(line, series, number, date, text, registrationDate, signature, transactions);
+            return new Voucher(line, series, number, date, text, registrationDate, signature, Lists.freeze(transactions));
         }
 
     }
@@ -0,0 +1,155 @@
+package sie.domain;
+
+import java.time.LocalDate;
+import java.util.*;
+
+/**
+ * Indexes of the vouchers of a document.
+ * <p>
+ * The vouchers are sorted once. The index by series and number, by date and
+ * by account are built the first time they are needed, and are never changed
+ * after that. The lists handed out are views that cannot be changed.
+ *
+ * @author Håkan Lidén
+ */
+final class VoucherIndex {
+
+    private final List<Voucher> sorted;
+    private volatile Map<Key, Voucher> byKey;
+    private volatile Dated<Voucher> byDate;
+    private volatile Map<String, Postings> byAccount;
+
+    VoucherIndex(List<Voucher> vouchers) {
+        Voucher[] array = vouchers.toArray(Voucher[]::new);
+        Arrays.sort(array);
+        this.sorted = Collections.unmodifiableList(Arrays.asList(array));
+    }
+
+    List<Voucher> sorted() {
+        return sorted;
+    }
+
+    Optional<Voucher> bySeriesAndNumber(String series, Integer number) {
+        Map<Key, Voucher> index = byKey;
+        if (index == null) {
+            index = new HashMap<>(Math.max(16, sorted.size() * 2));
+            for (Voucher voucher : sorted) {
+                index.putIfAbsent(new Key(voucher.optSeries().orElse(null), voucher.optNumber().orElse(null)), voucher);
+            }
+            byKey = index;
+        }
+        return Optional.ofNullable(index.get(new Key(series == null || series.isBlank() ? null : series, number)));
+    }
+
+    List<Voucher> between(LocalDate from, LocalDate to) {
+        Dated<Voucher> index = byDate;
+        if (index == null) {
+            index = new Dated<>(sorted, sorted.stream().map(Voucher::date).toList());
+            byDate = index;
+        }
+        return index.between(from, to);
+    }
+
+    List<Transaction> byAccount(String accountNumber) {
+        Postings postings = postings().get(accountNumber);
+        return postings == null ? List.of() : postings.all;
+    }
+
+    List<Transaction> byAccount(String accountNumber, LocalDate from, LocalDate to) {
+        Postings postings = postings().get(accountNumber);
+        return postings == null ? List.of() : postings.byDate.between(from, to);
+    }
+
+    private Map<String, Postings> postings() {
+        Map<String, Postings> index = byAccount;
+        if (index == null) {
+            Map<String, List<Transaction>> transactions = new HashMap<>();
+            Map<String, List<LocalDate>> dates = new HashMap<>();
+            for (Voucher voucher : sorted) {
+                for (Transaction transaction : voucher.transactions()) {
+                    String account = transaction.accountNumber();
+                    transactions.computeIfAbsent(account, a -> new ArrayList<>()).add(transaction);
+                    dates.computeIfAbsent(account, a -> new ArrayList<>())
+                            .add(transaction.date() != null ? transaction.date() : voucher.date());
+                }
+            }
+            index = new HashMap<>(Math.max(16, transactions.size() * 2));
+            for (Map.Entry<String, List<Transaction>> entry : transactions.entrySet()) {
+                index.put(entry.getKey(), new Postings(entry.getValue(), dates.get(entry.getKey())));
+            }
+            byAccount = index;
+        }
+        return index;
+    }
+
+    private record Key(String series, Integer number) {
+
+    }
+
+    private static final class Postings {
+
+        private final List<Transaction> all;
+        private final Dated<Transaction> byDate;
+
+        private Postings(List<Transaction> transactions, List<LocalDate> dates) {
+            this.all = Collections.unmodifiableList(transactions);
+            this.byDate = new Dated<>(transactions, dates);
+        }
+    }
+
+    /**
+     * Items sorted by date, for a binary search of a range of dates. Items
+     * without a date are left out. Items with the same date keep their
+     * order.
+     */
+    private static final class Dated<T> {
+
+        private final List<T> items;
+        private final LocalDate[] dates;
+
+        private Dated(List<T> items, List<LocalDate> dates) {
+            Integer[] order = new Integer[items.size()];
+            int count = 0;
+            for (int i = 0; i < order.length; i++) {
+                if (dates.get(i) != null) {
+                    order[count++] = i;
+                }
+            }
+            Arrays.sort(order, 0, count, Comparator.comparing(dates::get));
+            List<T> sortedItems = new ArrayList<>(count);
+            this.dates = new LocalDate[count];
+            for (int i = 0; i < count; i++) {
+                sortedItems.add(items.get(order[i]));
+                this.dates[i] = dates.get(order[i]);
+            }
+            this.items = Collections.unmodifiableList(sortedItems);
+        }
+
+        private List<T> between(LocalDate from, LocalDate to) {
+            int first = firstIndex(from, false);
+            int last = firstIndex(to, true);
+            return first < last ? items.subList(first, last) : List.of();
+        }
+
+        /**
+         * @param date the date to look for
+         * @param after true for the first date after the given date, false
+         * for the first date on or after it
+         * @return the index of the first such date
+         */
+        private int firstIndex(LocalDate date, boolean after) {
+            int low = 0;
+            int high = dates.length;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                int comparison = dates[middle].compareTo(date);
+                if (comparison < 0 || after && comparison == 0) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package sie.exception;
+
+/**
+ *
+ * @author Håkan Lidén
+ */
+public class InvalidSnapshotException extends SieException {
+
+    public InvalidSnapshotException(String message) {
+        super(message);
+    }
+
+    public InvalidSnapshotException(String message, Throwable cause) {
+        super(message, cause);
+    }
+
+}
@@ -0,0 +1,13 @@
+package sie.exception;
+
+/**
+ *
+ * @author Håkan Lidén
+ */
+public class SourceTooLargeException extends SieException {
+
+    public SourceTooLargeException(long maxSize) {
+        super("Källan är större än tillåtna " + maxSize + " byte");
+    }
+
+}
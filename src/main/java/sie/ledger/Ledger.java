@@ -0,0 +1,85 @@
+package sie.ledger;
+
+import java.math.BigDecimal;
+import java.util.*;
+import sie.domain.*;
+import sie.domain.Account.ObjectId;
+
+/**
+ * The sums of the transactions of a document, by account and by account and
+ * object.
+ * <p>
+ * The vouchers are walked once, when the ledger is created. The sums are
+ * exact: they are held in hundredths as long as they fit in a long, and as
+ * BigDecimal after that.
+ *
+ * @author Håkan Lidén
+ */
+public final class Ledger {
+
+    private final Map<String, Sum> byAccount;
+    private final Map<ObjectKey, Sum> byObject;
+
+    private Ledger(Map<String, Sum> byAccount, Map<ObjectKey, Sum> byObject) {
+        this.byAccount = byAccount;
+        this.byObject = byObject;
+    }
+
+    /**
+     * @param document the document to sum the transactions of
+     * @return the ledger of the document
+     */
+    public static Ledger of(Document document) {
+        Map<String, Sum> byAccount = new HashMap<>();
+        Map<ObjectKey, Sum> byObject = new HashMap<>();
+        for (Voucher voucher : document.vouchers()) {
+            for (Transaction transaction : voucher.transactions()) {
+                String account = transaction.accountNumber();
+                byAccount.computeIfAbsent(account, a -> new Sum()).add(transaction);
+                for (ObjectId objectId : transaction.objectIds()) {
+                    byObject.computeIfAbsent(new ObjectKey(account, objectId), k -> new Sum()).add(transaction);
+                }
+            }
+        }
+        return new Ledger(byAccount, byObject);
+    }
+
+    /**
+     * @return the numbers of the accounts with transactions, sorted
+     */
+    public SortedSet<String> accountNumbers() {
+        return Collections.unmodifiableSortedSet(new TreeSet<>(byAccount.keySet()));
+    }
+
+    /**
+     * @param accountNumber the number of the account
+     * @return the sum of the transactions on the account, with a scale of
+     * two, zero if there are none
+     */
+    public BigDecimal sum(String accountNumber) {
+        return Sum.amount(byAccount.get(accountNumber));
+    }
+
+    /**
+     * @param accountNumber the number of the account
+     * @param objectId the object
+     * @return the sum of the transactions on the account with the object,
+     * with a scale of two, zero if there are none
+     */
+    public BigDecimal sum(String accountNumber, ObjectId objectId) {
+        return Sum.amount(byObject.get(new ObjectKey(accountNumber, objectId)));
+    }
+
+    /**
+     * @param accountNumber the number of the account
+     * @return the number of transactions on the account
+     */
+    public int count(String accountNumber) {
+        Sum sum = byAccount.get(accountNumber);
+        return sum == null ? 0 : sum.count();
+    }
+
+    private record ObjectKey(String accountNumber, ObjectId objectId) {
+
+    }
+}
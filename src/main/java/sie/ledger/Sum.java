@@ -0,0 +1,60 @@
+package sie.ledger;
+
+import java.math.BigDecimal;
+import sie.domain.Amounts;
+import sie.domain.Transaction;
+
+/**
+ * An exact sum of amounts, in hundredths until it does not fit in a long and
+ * as BigDecimal after that.
+ *
+ * @author Håkan Lidén
+ */
+final class Sum {
+
+    private long hundredths;
+    private BigDecimal overflow;
+    private int count;
+
+    void add(Transaction transaction) {
+        count++;
+        if (overflow == null) {
+            try {
+                hundredths = Math.addExact(hundredths, transaction.amountInHundredths());
+                return;
+            } catch (ArithmeticException ex) {
+                overflow = Amounts.of(hundredths);
+            }
+        }
+        overflow = overflow.add(transaction.amount());
+    }
+
+    void add(Sum other) {
+        count += other.count;
+        if (overflow == null && other.overflow == null) {
+            try {
+                hundredths = Math.addExact(hundredths, other.hundredths);
+                return;
+            } catch (ArithmeticException ex) {
+                overflow = Amounts.of(hundredths);
+            }
+        }
+        overflow = amount(this).add(amount(other));
+    }
+
+    int count() {
+        return count;
+    }
+
+    /**
+     * @param sum the sum, may be null
+     * @return the amount of the sum with a scale of two, zero if there is no
+     * sum
+     */
+    static BigDecimal amount(Sum sum) {
+        if (sum == null) {
+            return Amounts.of(0);
+        }
+        return sum.overflow != null ? sum.overflow : Amounts.of(sum.hundredths);
+    }
+}
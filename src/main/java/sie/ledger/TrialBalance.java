@@ -0,0 +1,283 @@
+package sie.ledger;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.*;
+import sie.domain.*;
+
+/**
+ * The trial balance of a document, for the current financial year, by account
+ * and by month.
+ * <p>
+ * The opening balance of an account is its #IB, or zero when there is none.
+ * The movement is the sum of the transactions of the year, and the closing
+ * balance is the opening balance plus the movement. A transaction belongs to
+ * the month of its date, or of the date of its voucher when it has none.
+ * Transactions dated outside the year, or without any date, are summed apart
+ * as {@link AccountBalance#outsideYear()} and are not part of the balances.
+ * A document without a current financial year is taken as one year, made of
+ * the months that have transactions.
+ * <p>
+ * The vouchers are summed in one parallel pass, each thread into its own
+ * movements, which are merged at the end. The result is then checked against
+ * the #UB, #RES and #PSALDO of the accounting plan: #UB against the closing
+ * balance, #RES against the movement of the year and #PSALDO without an
+ * object against the movement of the month.
+ *
+ * @author Håkan Lidén
+ */
+public final class TrialBalance {
+
+    private static final Integer CURRENT_YEAR = 0;
+    private static final String CLOSING_BALANCE = "#UB",
+            RESULT = "#RES",
+            PERIODICAL_BALANCE = "#PSALDO";
+
+    private final Map<String, AccountBalance> byNumber;
+    private final List<AccountBalance> accounts;
+    private final List<Discrepancy> discrepancies;
+
+    private TrialBalance(Map<String, AccountBalance> byNumber, List<Discrepancy> discrepancies) {
+        this.byNumber = byNumber;
+        this.accounts = List.copyOf(byNumber.values());
+        this.discrepancies = discrepancies;
+    }
+
+    /**
+     * @param document the document to sum
+     * @return the trial balance of the current financial year of the document
+     */
+    public static TrialBalance of(Document document) {
+        FinancialYear year = Optional.ofNullable(document.metaData())
+                .flatMap(metaData -> metaData.optFinancialYearByIndex(CURRENT_YEAR))
+                .filter(y -> y.startDate() != null && y.endDate() != null)
+                .orElse(null);
+        Movements movements = document.vouchers().parallelStream()
+                .collect(() -> new Movements(year), Movements::add, Movements::merge);
+        Optional<AccountingPlan> plan = document.optAccountingPlan();
+        SortedSet<String> numbers = new TreeSet<>(movements.byAccount.keySet());
+        plan.ifPresent(p -> p.accounts().stream()
+                .filter(TrialBalance::hasBalances)
+                .forEach(account -> numbers.add(account.number())));
+        List<YearMonth> months = months(year, movements);
+
+        Map<String, AccountBalance> accounts = new LinkedHashMap<>();
+        List<Discrepancy> discrepancies = new ArrayList<>();
+        for (String number : numbers) {
+            Optional<Account> account = plan.flatMap(p -> p.optAccountByNumber(number));
+            Map<YearMonth, Sum> byMonth = movements.byAccount.getOrDefault(number, Map.of());
+            BigDecimal opening = account.flatMap(a -> a.optOpeningBalanceByYearIndex(CURRENT_YEAR))
+                    .map(Balance::amount)
+                    .orElse(Amounts.of(0));
+            List<PeriodBalance> periods = new ArrayList<>(months.size());
+            BigDecimal balance = opening;
+            for (YearMonth month : months) {
+                BigDecimal movement = Sum.amount(byMonth.get(month));
+                BigDecimal closing = balance.add(movement);
+                periods.add(new PeriodBalance(month, balance, movement, closing));
+                balance = closing;
+            }
+            BigDecimal movement = Sum.amount(movements.total.get(number));
+            AccountBalance accountBalance = new AccountBalance(number, opening, movement, opening.add(movement),
+                    Sum.amount(movements.outsideYear.get(number)), Collections.unmodifiableList(periods));
+            accounts.put(number, accountBalance);
+            account.ifPresent(a -> check(a, accountBalance, discrepancies));
+        }
+        return new TrialBalance(Collections.unmodifiableMap(accounts), Collections.unmodifiableList(discrepancies));
+    }
+
+    /**
+     * @return the balances of the accounts with transactions or balances,
+     * sorted by account number
+     */
+    public List<AccountBalance> accounts() {
+        return accounts;
+    }
+
+    /**
+     * @param accountNumber the number of the account
+     * @return the balance of the account, empty if it has no transactions
+     * and no balances
+     */
+    public Optional<AccountBalance> optAccount(String accountNumber) {
+        return Optional.ofNullable(byNumber.get(accountNumber));
+    }
+
+    /**
+     * @return the #UB, #RES and #PSALDO that do not match the transactions,
+     * in order of account number
+     */
+    public List<Discrepancy> discrepancies() {
+        return discrepancies;
+    }
+
+    /**
+     * @return true if the balances of the accounting plan match the
+     * transactions
+     */
+    public boolean consistent() {
+        return discrepancies.isEmpty();
+    }
+
+    private static boolean hasBalances(Account account) {
+        return account.optOpeningBalanceByYearIndex(CURRENT_YEAR).isPresent()
+                || account.optClosingBalanceByYearIndex(CURRENT_YEAR).isPresent()
+                || account.optResultByYearIndex(CURRENT_YEAR).isPresent()
+                || account.periodicalBalances().stream().anyMatch(TrialBalance::checked);
+    }
+
+    private static boolean checked(PeriodicalBalance balance) {
+        return CURRENT_YEAR.equals(balance.yearIndex()) && balance.optObjectId().isEmpty();
+    }
+
+    /**
+     * The months of the current financial year, or the months with
+     * transactions when there is no such year.
+     */
+    private static List<YearMonth> months(FinancialYear year, Movements movements) {
+        if (year == null) {
+            return List.copyOf(new TreeSet<>(movements.months));
+        }
+        List<YearMonth> months = new ArrayList<>();
+        YearMonth last = YearMonth.from(year.endDate());
+        for (YearMonth month = YearMonth.from(year.startDate()); !month.isAfter(last); month = month.plusMonths(1)) {
+            months.add(month);
+        }
+        return months;
+    }
+
+    private static void check(Account account, AccountBalance balance, List<Discrepancy> discrepancies) {
+        account.optClosingBalanceByYearIndex(CURRENT_YEAR)
+                .filter(ub -> ub.amount().compareTo(balance.closing()) != 0)
+                .ifPresent(ub -> discrepancies.add(new Discrepancy(account.number(), CLOSING_BALANCE, null,
+                ub.amount(), balance.closing(), ub.optLine().orElse(null))));
+        account.optResultByYearIndex(CURRENT_YEAR)
+                .filter(res -> res.amount().compareTo(balance.movement()) != 0)
+                .ifPresent(res -> discrepancies.add(new Discrepancy(account.number(), RESULT, null,
+                res.amount(), balance.movement(), res.optLine().orElse(null))));
+        account.periodicalBalances().stream()
+                .filter(TrialBalance::checked)
+                .forEach(psaldo -> {
+                    BigDecimal movement = balance.optPeriod(psaldo.period())
+                            .map(PeriodBalance::movement)
+                            .orElse(Amounts.of(0));
+                    if (psaldo.amount().compareTo(movement) != 0) {
+                        discrepancies.add(new Discrepancy(account.number(), PERIODICAL_BALANCE, psaldo.period(),
+                                psaldo.amount(), movement, psaldo.optLine().orElse(null)));
+                    }
+                });
+    }
+
+    /**
+     * The balance of an account for the year.
+     *
+     * @param accountNumber the number of the account
+     * @param opening the opening balance
+     * @param movement the sum of the transactions of the year
+     * @param closing the opening balance plus the movement
+     * @param outsideYear the sum of the transactions dated outside the year,
+     * or without a date, which are left out of the balances
+     * @param periods the balances by month of the year, in order
+     */
+    public static record AccountBalance(String accountNumber, BigDecimal opening, BigDecimal movement,
+            BigDecimal closing, BigDecimal outsideYear, List<PeriodBalance> periods) {
+
+        /**
+         * @param period the month
+         * @return the balance of the month, empty if the month is outside the
+         * trial balance
+         */
+        public Optional<PeriodBalance> optPeriod(YearMonth period) {
+            return periods.stream().filter(p -> p.period().equals(period)).findFirst();
+        }
+    }
+
+    /**
+     * The balance of an account for a month.
+     *
+     * @param period the month
+     * @param opening the balance at the start of the month
+     * @param movement the sum of the transactions of the month
+     * @param closing the balance at the end of the month
+     */
+    public static record PeriodBalance(YearMonth period, BigDecimal opening, BigDecimal movement, BigDecimal closing) {
+
+    }
+
+    /**
+     * A balance of the accounting plan that does not match the transactions.
+     *
+     * @param accountNumber the number of the account
+     * @param tag the tag of the balance: #UB, #RES or #PSALDO
+     * @param period the month of a #PSALDO, null for the others
+     * @param given the amount in the document
+     * @param calculated the amount calculated from the transactions
+     * @param line the line of the balance, null if it is not known
+     */
+    public static record Discrepancy(String accountNumber, String tag, YearMonth period,
+            BigDecimal given, BigDecimal calculated, String line) {
+
+    }
+
+    /**
+     * The sums of the transactions of some of the vouchers, by account and
+     * month. Each thread of the parallel pass has its own.
+     */
+    private static final class Movements {
+
+        private final FinancialYear year;
+        private final Map<String, Map<YearMonth, Sum>> byAccount = new HashMap<>();
+        private final Map<String, Sum> total = new HashMap<>();
+        private final Map<String, Sum> outsideYear = new HashMap<>();
+        private final Set<YearMonth> months = new HashSet<>();
+
+        private Movements(FinancialYear year) {
+            this.year = year;
+        }
+
+        private void add(Voucher voucher) {
+            for (Transaction transaction : voucher.transactions()) {
+                String account = transaction.accountNumber();
+                Map<YearMonth, Sum> sums = byAccount.computeIfAbsent(account, a -> new HashMap<>());
+                LocalDate date = transaction.date() != null ? transaction.date() : voucher.date();
+                if (!inYear(date)) {
+                    outsideYear.computeIfAbsent(account, a -> new Sum()).add(transaction);
+                    continue;
+                }
+                total.computeIfAbsent(account, a -> new Sum()).add(transaction);
+                if (date != null) {
+                    YearMonth month = YearMonth.from(date);
+                    months.add(month);
+                    sums.computeIfAbsent(month, m -> new Sum()).add(transaction);
+                }
+            }
+        }
+
+        /**
+         * Without a financial year every transaction is in the year, also
+         * those without a date, which then belong to no month.
+         */
+        private boolean inYear(LocalDate date) {
+            if (year == null) {
+                return true;
+            }
+            return date != null && !date.isBefore(year.startDate()) && !date.isAfter(year.endDate());
+        }
+
+        private void merge(Movements other) {
+            other.total.forEach((account, sum) -> total.merge(account, sum, Movements::merged));
+            other.outsideYear.forEach((account, sum) -> outsideYear.merge(account, sum, Movements::merged));
+            other.byAccount.forEach((account, sums) -> {
+                Map<YearMonth, Sum> mine = byAccount.computeIfAbsent(account, a -> new HashMap<>());
+                sums.forEach((month, sum) -> mine.merge(month, sum, Movements::merged));
+            });
+            months.addAll(other.months);
+        }
+
+        private static Sum merged(Sum sum, Sum other) {
+            sum.add(other);
+            return sum;
+        }
+    }
+}
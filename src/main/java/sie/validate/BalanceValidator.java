@@ -2,6 +2,7 @@ package sie.validate;
 
 import java.math.BigDecimal;
 import sie.domain.*;
+import sie.ledger.Ledger;
 
 /**
  *
@@ -34,20 +35,18 @@ class BalanceValidator extends AbstractValidator<Document> {
             entity.optAccountingPlan().ifPresent(plan -> {
                 entity.metaData().optFinancialYearByIndex(0).ifPresent(fy -> {
                     Integer index = fy.index();
-                    checkClosingBalance(plan, index);
-                    checkResult(plan, index);
+                    Ledger ledger = Ledger.of(entity);
+                    checkClosingBalance(plan, ledger, index);
+                    checkResult(plan, ledger, index);
                 });
             });
         }
     }
 
-    private void checkClosingBalance(AccountingPlan plan, Integer index) {
+    private void checkClosingBalance(AccountingPlan plan, Ledger ledger, Integer index) {
         plan.accounts().forEach(acc -> {
             acc.optClosingBalanceByYearIndex(index).ifPresent((balance) -> {
-                BigDecimal sumOfTransactions = new BigDecimal(entity.vouchers().parallelStream()
-                        .flatMap(voucher -> voucher.transactions().parallelStream())
-                        .filter(transaction -> transaction.accountNumber().equals(acc.number()))
-                        .mapToDouble(transaction -> transaction.amount().doubleValue()).sum()).setScale(Entity.SCALE, Entity.ROUNDING_MODE);
+                BigDecimal sumOfTransactions = ledger.sum(acc.number());
                 BigDecimal sumWithOpeningBalance = sumOfTransactions.add(acc.optOpeningBalanceByYearIndex(index).map(Balance::amount).orElse(BigDecimal.ZERO).setScale(Entity.SCALE, Entity.ROUNDING_MODE));
                 if (!sumWithOpeningBalance.equals(balance.amount())) {
                     addWarning(CLOSING_BALANCE, "Utgående balans för konto " + acc.number()
@@ -58,13 +57,10 @@ class BalanceValidator extends AbstractValidator<Document> {
         });
     }
 
-    private void checkResult(AccountingPlan plan, Integer index) {
+    private void checkResult(AccountingPlan plan, Ledger ledger, Integer index) {
         plan.accounts().forEach(acc -> {
             acc.optResultByYearIndex(index).ifPresent((balance) -> {
-                BigDecimal sumOfTransactions = new BigDecimal(entity.vouchers().parallelStream()
-                        .flatMap(voucher -> voucher.transactions().parallelStream())
-                        .filter(transaction -> transaction.accountNumber().equals(acc.number()))
-                        .mapToDouble(transaction -> transaction.amount().doubleValue()).sum()).setScale(Entity.SCALE, Entity.ROUNDING_MODE);
+                BigDecimal sumOfTransactions = ledger.sum(acc.number());
                 if (!sumOfTransactions.equals(balance.amount())) {
                     addWarning(RESULT, "Resultat för konto " + acc.number()
                             + " år " + index + " stämmer inte med summering av verifikationerna"
@@ -1,8 +1,10 @@
 package sie;
 
 import static org.junit.jupiter.api.Assertions.*;
+import java.util.*;
+import java.util.stream.Stream;
 import org.junit.jupiter.api.Test;
-import sie.domain.Document;
+import sie.domain.*;
 
 /**
  *
@@ -54,4 +56,48 @@ public class ChecksumTest {
         String sieChecksum = Sie4j.calculateChecksum(sieDoc);
         assertEquals(sieChecksum, jsonChecksum);
     }
+
+    @Test
+    public void test_checksum_can_be_turned_off() {
+        Document document = Document.builder()
+                .metaData(DOCUMENT.metaData())
+                .accountingPlan(DOCUMENT.optAccountingPlan().orElse(null))
+                .calculateChecksum(false)
+                .apply();
+        assertFalse(document.optChecksum().isPresent());
+        assertNotEquals(DOCUMENT, document);
+    }
+
+    @Test
+    public void test_streamed_checksum_matches_checksum_of_written_string() {
+        Stream.of("/sample/BLBLOV_SIE4.SE", "/sample/BLBLOV_SIE4_UTF_8.SI", "/sample/Arousells_Visning_AB.SE").forEach(sample -> {
+            Document document = Sie4j.fromSie(getClass().getResourceAsStream(sample));
+            assertEquals(Checksum.calculate(SieWriter.write(document)), Checksum.calculate(document), sample);
+        });
+    }
+
+    @Test
+    public void test_section_checksums_are_used_again_for_unchanged_sections() {
+        Document document = Sie4j.fromSie(getClass().getResourceAsStream("/sample/BLBLOV_SIE4.SE"));
+        SectionChecksums sections = document.sectionChecksums();
+        assertEquals(Set.of("A", "B", "F", "I", "N"), sections.vouchers().keySet());
+        List<Voucher> vouchers = document.vouchers().stream()
+                .map(voucher -> voucher.optSeries().get().equals("B") ? voucher.number(voucher.optNumber().get() + 100) : voucher)
+                .toList();
+        Document renumbered = Document.builder()
+                .metaData(document.metaData())
+                .accountingPlan(document.optAccountingPlan().get())
+                .dimensions(document.dimensions())
+                .objects(document.objects())
+                .vouchers(vouchers)
+                .sectionChecksums(sections)
+                .apply();
+        SectionChecksums result = renumbered.sectionChecksums();
+        assertSame(sections.metaDataSection(), result.metaDataSection());
+        assertSame(sections.accountingPlanSection(), result.accountingPlanSection());
+        assertSame(sections.voucherSection("A"), result.voucherSection("A"));
+        assertNotEquals(sections.vouchers().get("B"), result.vouchers().get("B"));
+        assertNotEquals(sections.value(), result.value());
+        assertEquals(Sie4j.calculateSectionChecksums(renumbered, null), result);
+    }
 }
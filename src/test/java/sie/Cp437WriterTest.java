@@ -0,0 +1,47 @@
+package sie;
+
+import java.io.*;
+import java.util.Random;
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+import sie.domain.Entity;
+
+/**
+ *
+ * @author Håkan Lidén
+ */
+public class Cp437WriterTest {
+
+    @Test
+    public void test_all_characters_are_encoded_as_by_the_charset() throws IOException {
+        StringBuilder all = new StringBuilder();
+        for (char c = 0; c < Character.MAX_VALUE; c++) {
+            all.append(c);
+        }
+        assertArrayEquals(all.toString().getBytes(Entity.CHARSET), encode(all.toString(), all.length()));
+    }
+
+    @Test
+    public void test_surrogates_split_between_writes() throws IOException {
+        String alphabet = "aåÄö€ ─😀𐀀";
+        Random random = new Random(437);
+        for (int i = 0; i < 200; i++) {
+            StringBuilder text = new StringBuilder();
+            for (int j = 0; j < 100; j++) {
+                text.append(alphabet.charAt(random.nextInt(alphabet.length())));
+            }
+            String content = text.toString();
+            assertArrayEquals(content.getBytes(Entity.CHARSET), encode(content, 1 + random.nextInt(10)), content);
+        }
+    }
+
+    private static byte[] encode(String content, int size) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (Writer writer = new Cp437Writer(output)) {
+            for (int i = 0; i < content.length(); i += size) {
+                writer.write(content, i, Math.min(size, content.length() - i));
+            }
+        }
+        return output.toByteArray();
+    }
+}
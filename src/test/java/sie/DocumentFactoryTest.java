@@ -1,6 +1,6 @@
 package sie;
 
-import java.util.Optional;
+import java.util.*;
 import static org.junit.jupiter.api.Assertions.*;
 import org.junit.jupiter.api.Test;
 import sie.domain.*;
@@ -13,6 +13,9 @@ import sie.log.SieLog;
  */
 public class DocumentFactoryTest {
 
+    private static final String HEADER = "#FLAGGA 0\n#PROGRAM \"Test\" 1.0\n#FORMAT PC8\n#GEN 20210101\n#SIETYP 4\n#FNAMN \"Bolaget\"\n"
+            + "#RAR 0 20210101 20211231\n#KPTYP BAS2014\n";
+
     @Test
     public void test_file_with_missing_program_version() {
         DocumentFactory factory = DocumentFactory.from(asByteArray("/sample/SIE_with_missing_program_version.se"));
@@ -131,6 +134,57 @@ public class DocumentFactoryTest {
         assertEquals(expectedMessage, factory.getLogs().get(0).getMessage());
     }
 
+    @Test
+    public void test_balances_before_account_declaration_are_attached_in_single_pass() {
+        String content = "#FLAGGA 0\n#PROGRAM \"Test\" 1.0\n#FORMAT PC8\n#GEN 20210101\n#SIETYP 2\n#FNAMN \"Bolaget\"\n"
+                + "#RAR 0 20200101 20201231\n#IB 0 1910 100.00\n#KONTO 1910 \"Kassa\"\n#UB 0 1910 150.00\n";
+        Document document = DocumentFactory.from(content).getDocument();
+        Account account = document.optAccountingPlan().get().accounts().get(0);
+        assertEquals("1910", account.number());
+        assertEquals(1, account.openingBalances().size());
+        assertEquals(1, account.closingBalances().size());
+    }
+
+    @Test
+    public void test_periodical_balance_before_financial_years_gets_year_index_from_period() {
+        String content = "#FLAGGA 0\n#PROGRAM \"Test\" 1.0\n#FORMAT PC8\n#GEN 20210101\n#SIETYP 2\n#FNAMN \"Bolaget\"\n"
+                + "#KONTO 3010 \"Försäljning\"\n#PSALDO 0 201905 3010 {} -500.00\n"
+                + "#RAR 0 20200101 20201231\n#RAR -1 20190101 20191231\n";
+        Document document = DocumentFactory.from(content).getDocument();
+        Account account = document.optAccountingPlan().get().accounts().get(0);
+        assertEquals(1, account.periodicalBalances().size());
+        assertEquals(-1, account.periodicalBalances().get(0).yearIndex());
+    }
+
+    @Test
+    public void test_repeated_account_lines_are_accounts_of_their_own() {
+        String content = HEADER + "#KONTO 1910 \"Kassa\"\n#KONTO 1910 \"Kassa igen\"\n#IB 0 1910 100.00\n";
+        Document document = DocumentFactory.from(content).getDocument();
+        List<Account> accounts = document.optAccountingPlan().get().accounts();
+        assertEquals(2, accounts.size());
+        assertEquals("Kassa", accounts.get(0).optLabel().get());
+        assertEquals("Kassa igen", accounts.get(1).optLabel().get());
+        accounts.forEach(account -> assertEquals(1, account.openingBalances().size()));
+    }
+
+    @Test
+    public void test_indented_tags_are_ignored_except_transactions() {
+        String content = HEADER + "#KONTO 1910 \"Kassa\"\n  #KONTO 1920 \"Bank\"\n#KONTO 3010 \"Försäljning\"\n"
+                + "  #IB 0 1910 100.00\n#VER A 1 20210102 \"Kontant\"\n{\n   #TRANS 1910 {} 10.00\n   #TRANS 3010 {} -10.00\n}\n";
+        Document document = DocumentFactory.from(content).getDocument();
+        assertEquals(Document.Type.E4, document.metaData().sieType());
+        assertEquals(2, document.optAccountingPlan().get().accounts().size());
+        assertTrue(document.optAccountingPlan().get().accounts().get(0).openingBalances().isEmpty());
+        assertEquals(2, document.vouchers().get(0).transactions().size());
+    }
+
+    @Test
+    public void test_missing_account_number_in_transaction_is_found_in_accounting_plan() {
+        SieException ex = assertThrows(MissingAccountNumberException.class, () -> DocumentFactory.from(asByteArray("/sample/BLBLOV_SIE4_UTF_8_with_missing_account_numbers_in_transaction.SI")));
+        assertEquals("Kontonummer saknas", ex.getMessage());
+        assertEquals(Optional.of("#" + Entity.ACCOUNT), ex.getTag());
+    }
+
     private byte[] asByteArray(String path) {
         return SieReader.streamToByteArray(getClass().getResourceAsStream(path));
     }
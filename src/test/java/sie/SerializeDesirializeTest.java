@@ -1,9 +1,13 @@
 package sie;
 
-import java.io.InputStream;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.stream.Stream;
 import static org.junit.jupiter.api.Assertions.*;
 import org.junit.jupiter.api.Test;
-import sie.domain.Document;
+import sie.domain.*;
+import sie.dto.DocumentDTO;
 
 
 /**
@@ -20,6 +24,31 @@ public class SerializeDesirializeTest {
         assertEquals(jsonFromSie, jsonFromJson);
     }
 
+    @Test
+    public void test_streamed_json_is_same_as_json_from_dto() throws Exception {
+        Document doc = Sie4j.fromSie(getSieSource());
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        Sie4j.asJson(doc, output);
+        String expected = new ObjectMapper().writeValueAsString(DocumentDTO.from(doc));
+        assertEquals(expected, output.toString(StandardCharsets.UTF_8));
+        assertEquals(expected, Sie4j.asJson(doc));
+    }
+
+    @Test
+    public void test_json_lines() {
+        Document doc = Sie4j.fromSie(getSieSource());
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        Sie4j.asJsonLines(doc, output);
+        String[] lines = output.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(doc.vouchers().size() + 1, lines.length);
+        assertEquals(doc.vouchers().get(0), Sie4j.voucherFromJsonLine(lines[1]));
+        Document result = Sie4j.fromJsonLines(new ByteArrayInputStream(output.toByteArray()));
+        assertEquals(Sie4j.fromJson(Sie4j.asJson(doc)), result);
+        try (Stream<Voucher> vouchers = Sie4j.streamVouchersFromJsonLines(new ByteArrayInputStream(output.toByteArray()))) {
+            assertEquals(doc.vouchers(), vouchers.toList());
+        }
+    }
+
     private InputStream getSieSource() {
         return getClass().getResourceAsStream("/sample/BLBLOV_SIE4.SE");
     }
@@ -2,13 +2,16 @@ package sie;
 
 import sie.dto.SieLogDTO;
 import java.io.*;
-import java.util.List;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.*;
 import java.util.stream.Collectors;
 import static org.junit.jupiter.api.Assertions.*;
 import org.junit.jupiter.api.Test;
 import sie.domain.*;
 import sie.dto.*;
 import sie.exception.SieException;
+import sie.exception.SourceTooLargeException;
 import sie.log.SieLog;
 
 
@@ -210,7 +213,68 @@ public class Sie4jTest {
         assertTrue(reader.read().objects().stream().map(ao -> ao.label()).anyMatch(s -> s.equals(expectedLabel)));
     }
 
+    @Test
+    public void test_streamed_vouchers_equal_document_vouchers() {
+        byte[] source = asByteArray("/sample/BLBLOV_SIE4.SE");
+        List<Voucher> expected = Sie4j.fromSie(source).vouchers();
+        List<Voucher> streamed = Sie4j.streamVouchers(source).sorted().toList();
+        assertFalse(streamed.isEmpty());
+        assertEquals(expected, streamed);
+    }
+
+    @Test
+    public void test_streamed_vouchers_stop_at_critical_error() {
+        byte[] source = asByteArray("/sample/BLBLOV_SIE4_UTF_8_with_critical_voucher_date_error.SI");
+        assertThrows(SieException.class, () -> Sie4j.streamVouchers(source).toList());
+    }
+
+    @Test
+    public void test_stream_is_read_to_its_end() {
+        byte[] source = asByteArray("/sample/BLBLOV_SIE4.SE");
+        // Hands out a few bytes at a time and never tells how many are available
+        InputStream input = new FilterInputStream(new ByteArrayInputStream(source)) {
+            @Override
+            public int available() {
+                return 0;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                return super.read(b, off, Math.min(len, 7));
+            }
+        };
+        assertEquals(Sie4j.fromSie(source), Sie4j.fromSie(input));
+    }
+
+    @Test
+    public void test_stream_larger_than_max_size() {
+        byte[] source = asByteArray("/sample/BLBLOV_SIE4.SE");
+        assertThrows(SourceTooLargeException.class, () -> Sie4j.fromSie(new ByteArrayInputStream(source), source.length - 1));
+        assertEquals(Sie4j.fromSie(source), Sie4j.fromSie(new ByteArrayInputStream(source), source.length));
+    }
+
+    @Test
+    public void test_mapped_file_gives_same_document_as_bytes() throws Exception {
+        for (String name : List.of("/sample/BLBLOV_SIE4.SE", "/sample/BLBLOV_SIE4_UTF_8.SI", "/sample/BLBLOV_SIE4_ISO_8859_15.SI")) {
+            Path path = Path.of(getClass().getResource(name).toURI());
+            assertEquals(Sie4j.fromSie(asByteArray(name)), Sie4j.fromSie(path));
+            assertEquals(Sie4j.fromSie(asByteArray(name)).vouchers(), Sie4j.streamVouchers(path).sorted().toList());
+        }
+    }
+
     private byte[] asByteArray(String path) {
         return SieReader.streamToByteArray(getClass().getResourceAsStream(path));
     }
+
+    @Test
+    public void test_vouchers_from_json_can_be_consumed_one_at_a_time() {
+        String json = Sie4j.asJson(getClass().getResourceAsStream("/sample/BLBLOV_SIE4.SE"));
+        Document expected = Sie4j.fromJson(json);
+        List<Voucher> vouchers = new ArrayList<>();
+        Document result = Sie4j.fromJson(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)), vouchers::add);
+        assertTrue(result.vouchers().isEmpty());
+        assertEquals(expected.vouchers(), vouchers);
+        assertEquals(expected.metaData(), result.metaData());
+        assertEquals(expected.optAccountingPlan(), result.optAccountingPlan());
+    }
 }
@@ -0,0 +1,94 @@
+package sie;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.nio.file.*;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import org.apache.commons.codec.binary.Hex;
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import sie.domain.Document;
+import sie.dto.ValidationResultDTO;
+
+/**
+ *
+ * @author Håkan Lidén
+ */
+public class SieCacheTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void test_repeated_input_is_taken_from_cache() throws IOException {
+        SieCache cache = SieCache.builder().apply();
+        byte[] input = read("BLBLOV_SIE4.SE");
+        Document doc = Sie4j.fromSie(input, cache);
+        assertEquals(Sie4j.fromSie(input), doc);
+        assertSame(doc, Sie4j.fromSie(input.clone(), cache));
+        ValidationResultDTO result = Sie4j.validate(input, cache);
+        assertEquals(Sie4j.validate(input), result);
+        assertSame(result, Sie4j.validate(input, cache));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void test_eviction() throws IOException {
+        byte[] first = read("BLBLOV_SIE4.SE");
+        byte[] second = read("BLBLOV_SIE1.SE");
+        SieCache cache = SieCache.builder().maxEntries(1).apply();
+        Document doc = Sie4j.fromSie(first, cache);
+        Sie4j.fromSie(second, cache);
+        assertEquals(1, cache.size());
+        assertNotSame(doc, Sie4j.fromSie(first, cache));
+        cache = SieCache.builder().maxBytes(first.length - 1).apply();
+        Sie4j.fromSie(first, cache);
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void test_limits() throws IOException {
+        assertThrows(IllegalArgumentException.class, () -> SieCache.builder().maxEntries(-1));
+        assertThrows(IllegalArgumentException.class, () -> SieCache.builder().maxBytes(-1));
+        byte[] input = read("BLBLOV_SIE4.SE");
+        SieCache cache = SieCache.builder().maxEntries(0).apply();
+        Document doc = Sie4j.fromSie(input, cache);
+        assertEquals(0, cache.size());
+        assertNotSame(doc, Sie4j.fromSie(input, cache));
+    }
+
+    @Test
+    public void test_directory() throws IOException {
+        byte[] input = read("BLBLOV_SIE4.SE");
+        Document doc = Sie4j.fromSie(input, SieCache.builder().directory(directory).apply());
+        ValidationResultDTO result = Sie4j.validate(input, SieCache.builder().directory(directory).apply());
+        SieCache cache = SieCache.builder().directory(directory).apply();
+        Document cached = Sie4j.fromSie(input, cache);
+        assertNotSame(doc, cached);
+        assertEquals(Sie4j.asSie(doc), Sie4j.asSie(cached));
+        ObjectMapper mapper = new ObjectMapper();
+        assertEquals(mapper.writeValueAsString(result), mapper.writeValueAsString(Sie4j.validate(input, cache)));
+    }
+
+    @Test
+    public void test_damaged_files_are_read_anew() throws Exception {
+        byte[] input = read("BLBLOV_SIE4.SE");
+        Document doc = Sie4j.fromSie(input);
+        String key = Hex.encodeHexString(MessageDigest.getInstance("SHA-256").digest(input));
+        byte[] damaged = Arrays.copyOf(Sie4j.asSnapshot(doc), 64);
+        // Keeps the magic bytes and the version, and leaves every string out
+        Arrays.fill(damaged, 6, damaged.length, (byte) 0);
+        Files.write(directory.resolve(key + ".snapshot"), damaged);
+        Files.write(directory.resolve(key + ".validation.json"), "{\"documentT".getBytes());
+        SieCache cache = SieCache.builder().directory(directory).apply();
+        assertEquals(doc, Sie4j.fromSie(input, cache));
+        assertNotNull(Sie4j.validate(input, cache));
+        assertEquals(Sie4j.asSie(doc), Sie4j.asSie(Sie4j.fromSie(input, SieCache.builder().directory(directory).apply())));
+    }
+
+    private byte[] read(String name) throws IOException {
+        return getClass().getResourceAsStream("/sample/" + name).readAllBytes();
+    }
+}
@@ -0,0 +1,46 @@
+package sie;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.*;
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+import sie.domain.Entity;
+
+/**
+ *
+ * @author Håkan Lidén
+ */
+public class SieLexerTest {
+
+    @Test
+    public void test_charset_detection() {
+        assertEquals(Entity.CHARSET, SieLexer.of(Helper.getSIE(4, 'E')).charset());
+        assertEquals(StandardCharsets.UTF_8, SieLexer.of("#FNAMN \"Övning\" ─".getBytes(StandardCharsets.UTF_8)).charset());
+        // 0xC4 is a box drawing character in Cp437 but not valid UTF-8
+        assertEquals(StandardCharsets.ISO_8859_1, SieLexer.of(new byte[]{'#', (byte) 0xD6, (byte) 0xC4}).charset());
+    }
+
+    @Test
+    public void test_lines_are_split_on_all_line_breaks() {
+        List<String> lines = new ArrayList<>();
+        SieLexer.of("  #FLAGGA 0\r\n#KONTO 1910 Kassa\r#KONTO 1920 Bank\n\n#SIETYP 4 \r\n".getBytes(StandardCharsets.US_ASCII))
+                .forEachLine(line -> lines.add(line.toString()));
+        assertEquals(List.of("#FLAGGA 0", "#KONTO 1910 Kassa", "#KONTO 1920 Bank", "", "#SIETYP 4"), lines);
+    }
+
+    @Test
+    public void test_parse_amount() {
+        assertEquals(new BigDecimal("-1234.50"), SieLexer.parseAmount("-1234.50"));
+        assertEquals(new BigDecimal("12345678901234567890.25"), SieLexer.parseAmount("12345678901234567890.25"));
+        assertThrows(NumberFormatException.class, () -> SieLexer.parseAmount("12,50"));
+    }
+
+    @Test
+    public void test_parse_date() {
+        assertEquals(LocalDate.of(2021, 2, 28), SieLexer.parseDate("20210231"));
+        assertEquals(LocalDate.of(2020, 12, 1), SieLexer.parseDate("20201201"));
+        assertThrows(java.time.format.DateTimeParseException.class, () -> SieLexer.parseDate("20201301"));
+    }
+}
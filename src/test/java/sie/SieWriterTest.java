@@ -2,7 +2,9 @@ package sie;
 
 import java.io.*;
 import java.math.BigDecimal;
-import java.nio.charset.StandardCharsets;
+import java.nio.channels.Channels;
+import java.nio.charset.*;
+import java.nio.file.Files;
 import java.time.LocalDate;
 import java.util.*;
 import java.util.stream.Collectors;
@@ -28,6 +30,45 @@ public class SieWriterTest {
         assertEquals(expectedResult, result);
     }
 
+    @Test
+    public void test_SieWriter_writes_same_content_to_stream_channel_and_writer() throws IOException {
+        Document doc = Sie4j.fromSie(getClass().getResourceAsStream("/sample/BLBLOV_SIE4_UTF_8.SI"));
+        String content = SieStringBuilder.parse(doc);
+        for (Charset charset : List.of(StandardCharsets.UTF_8, Entity.CHARSET)) {
+            ByteArrayOutputStream stream = new ByteArrayOutputStream();
+            Sie4j.asSie(doc, stream, charset);
+            assertArrayEquals(content.getBytes(charset), stream.toByteArray());
+            ByteArrayOutputStream channel = new ByteArrayOutputStream();
+            Sie4j.asSie(doc, Channels.newChannel(channel), charset);
+            assertArrayEquals(content.getBytes(charset), channel.toByteArray());
+        }
+        StringWriter writer = new StringWriter();
+        Sie4j.asSie(doc, writer);
+        assertEquals(content, writer.toString());
+        File file = File.createTempFile("sie4j", ".se");
+        file.deleteOnExit();
+        Sie4j.asSie(doc, file, Entity.CHARSET);
+        assertArrayEquals(content.getBytes(Entity.CHARSET), Files.readAllBytes(file.toPath()));
+    }
+
+    @Test
+    public void test_SieWriter_in_parallel_writes_same_content() {
+        Document sample = Sie4j.fromSie(getClass().getResourceAsStream("/sample/BLBLOV_SIE4.SE"));
+        List<Voucher> vouchers = new ArrayList<>();
+        for (int i = 0; i < 3000; i++) {
+            Voucher voucher = sample.vouchers().get(i % sample.vouchers().size());
+            vouchers.add(voucher.number(i + 1));
+        }
+        Document doc = Document.builder()
+                .metaData(sample.metaData())
+                .accountingPlan(sample.optAccountingPlan().get())
+                .vouchers(vouchers)
+                .apply();
+        StringWriter parallel = new StringWriter();
+        Sie4j.asSie(doc, parallel, true);
+        assertEquals(SieStringBuilder.parse(doc), parallel.toString());
+    }
+
     private MetaData createMetaData() {
         return MetaData.builder()
                 .company(Company.builder("Test av Writer").corporateId("123432-9878").apply())
@@ -0,0 +1,109 @@
+package sie;
+
+import java.math.BigDecimal;
+import java.time.*;
+import java.util.*;
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+import sie.domain.*;
+import sie.exception.InvalidSnapshotException;
+
+/**
+ *
+ * @author Håkan Lidén
+ */
+public class SnapshotTest {
+
+    @Test
+    public void test_snapshot_round_trip() {
+        for (String name : new String[]{"BLBLOV_SIE4.SE", "BLBLOV_SIE3_UTF_8_with_vouchers.SE", "Arousells_Visning_AB.SE", "CC3.SI"}) {
+            Document doc = Sie4j.fromSie(getClass().getResourceAsStream("/sample/" + name));
+            byte[] snapshot = Sie4j.asSnapshot(doc);
+            Document result = Sie4j.fromSnapshot(snapshot);
+            assertEquals(Sie4j.asSie(doc), Sie4j.asSie(result), name);
+            assertEquals(doc.optChecksum(), result.optChecksum(), name);
+            assertEquals(doc.vouchers().size(), result.vouchers().size(), name);
+            assertArrayEquals(snapshot, Sie4j.asSnapshot(result), name);
+        }
+    }
+
+    @Test
+    public void test_invalid_snapshot() {
+        Document doc = Sie4j.fromSie(getClass().getResourceAsStream("/sample/BLBLOV_SIE4.SE"));
+        byte[] snapshot = Sie4j.asSnapshot(doc);
+        assertThrows(InvalidSnapshotException.class, () -> Sie4j.fromSnapshot(Sie4j.asSie(doc).getBytes()));
+        assertThrows(InvalidSnapshotException.class, () -> Sie4j.fromSnapshot(Arrays.copyOf(snapshot, snapshot.length / 2)));
+        byte[] newer = snapshot.clone();
+        newer[5] = (byte) (Snapshot.VERSION + 1);
+        InvalidSnapshotException ex = assertThrows(InvalidSnapshotException.class, () -> Sie4j.fromSnapshot(newer));
+        assertEquals("Ögonblicksbildens version " + (Snapshot.VERSION + 1) + " stöds inte", ex.getMessage());
+    }
+
+    @Test
+    public void test_corrupted_snapshot() {
+        byte[] snapshot = Sie4j.asSnapshot(document(new BigDecimal("12.50")));
+        assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+            for (int i = 0; i < snapshot.length; i++) {
+                for (int value : new int[]{0x00, 0x01, 0x7F, 0x80, 0xFF}) {
+                    byte[] corrupted = snapshot.clone();
+                    corrupted[i] = (byte) value;
+                    try {
+                        Sie4j.fromSnapshot(corrupted);
+                    } catch (InvalidSnapshotException ex) {
+                        // Expected for most of the bytes
+                    }
+                }
+            }
+        });
+    }
+
+    @Test
+    public void test_snapshot_with_large_scale() {
+        BigDecimal amount = new BigDecimal("1.5").setScale(Snapshot.MAX_SCALE);
+        byte[] snapshot = Sie4j.asSnapshot(document(amount));
+        assertEquals(amount, Sie4j.fromSnapshot(snapshot).optAccountingPlan().get().accounts().get(0).periodicalBalances().get(0).amount());
+        assertThrows(InvalidSnapshotException.class, () -> Sie4j.asSnapshot(document(amount.setScale(Snapshot.MAX_SCALE + 1))));
+        // The header of an amount too large for a long is (zigzag(scale) << 1 | 1) + 1, as a varint
+        byte[] header = {(byte) 0x82, 0x02};
+        byte[] huge = {(byte) 0x80, (byte) 0x84, (byte) 0xAF, 0x5F};
+        int at = indexOf(snapshot, header);
+        assertTrue(at > 0);
+        assertEquals(-1, indexOf(Arrays.copyOfRange(snapshot, at + 1, snapshot.length), header));
+        byte[] corrupted = new byte[snapshot.length - header.length + huge.length];
+        System.arraycopy(snapshot, 0, corrupted, 0, at);
+        System.arraycopy(huge, 0, corrupted, at, huge.length);
+        System.arraycopy(snapshot, at + header.length, corrupted, at + huge.length, snapshot.length - at - header.length);
+        assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+            assertThrows(InvalidSnapshotException.class, () -> Sie4j.fromSnapshot(corrupted));
+        });
+    }
+
+    private static Document document(BigDecimal periodicalAmount) {
+        Account account = Account.builder("1930")
+                .addOpeningBalance(Balance.of(new BigDecimal("100.00"), 0))
+                .addPeriodicalBalance(PeriodicalBalance.builder().yearIndex(0).period(YearMonth.of(2024, 1)).amount(periodicalAmount).apply())
+                .apply();
+        Voucher voucher = Voucher.builder().series("A").number(1).date(LocalDate.of(2024, 1, 2))
+                .addTransaction(Transaction.builder().accountNumber("1930").amount(new BigDecimal("12.50")).apply())
+                .addTransaction(Transaction.builder().accountNumber("3010").amount(new BigDecimal("-12.50")).apply())
+                .apply();
+        return Document.builder()
+                .metaData(MetaData.builder()
+                        .sieType(Document.Type.E4)
+                        .company(Company.builder("Företaget AB").apply())
+                        .financialYears(List.of(FinancialYear.of(0, LocalDate.of(2024, 1, 1), LocalDate.of(2024, 12, 31))))
+                        .apply())
+                .accountingPlan(AccountingPlan.builder().accounts(List.of(account)).apply())
+                .vouchers(List.of(voucher))
+                .apply();
+    }
+
+    private static int indexOf(byte[] source, byte[] part) {
+        for (int i = 0; i <= source.length - part.length; i++) {
+            if (Arrays.equals(source, i, i + part.length, part, 0, part.length)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
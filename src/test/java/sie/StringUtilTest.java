@@ -25,4 +25,22 @@ public class StringUtilTest {
         assertEquals(expectedAmount2, parts2.get(4));
 
     }
+
+    @Test
+    public void handle_whitespace_like_before() {
+        assertEquals(List.of("#SRU", "1110", "", "#SRU 1110 "), StringUtil.getParts("#SRU 1110 "));
+        assertEquals(List.of("", "#TRANS", "1910", "\t#TRANS 1910"), StringUtil.getParts("\t#TRANS 1910"));
+        assertEquals(List.of("#KONTO", "1910", "\"Kassa och bank\"", "#KONTO  1910\t\"Kassa  och\tbank\""),
+                StringUtil.getParts("#KONTO  1910\t\"Kassa  och\tbank\""));
+        assertEquals(List.of("", ""), StringUtil.getParts(""));
+    }
+
+    @Test
+    public void handle_part_offsets() {
+        String line = "#TRANS 1930 {1 \"10\"} -100.00";
+        StringUtil.Parts parts = StringUtil.tokenize(line);
+        assertEquals(4, parts.fields());
+        assertEquals("{1 \"10\"}", line.substring(parts.start(2), parts.end(2)));
+        assertEquals(line, parts.get(parts.fields()));
+    }
 }
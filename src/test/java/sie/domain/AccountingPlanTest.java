@@ -2,6 +2,7 @@ package sie.domain;
 
 import java.math.BigDecimal;
 import java.time.YearMonth;
+import java.util.List;
 import static org.junit.jupiter.api.Assertions.*;
 import org.junit.jupiter.api.Test;
 import sie.Helper;
@@ -90,4 +91,31 @@ public class AccountingPlanTest extends Helper {
         assertEquals(lastBudgetAmount, account.getPeriodicalBudgets().get(last).amount());
         assertEquals(lastBudgetPeriod, account.getPeriodicalBudgets().get(last).period());
     }
+
+    @Test
+    public void test_AccountingPlan_lookups() {
+        AccountingPlan accountingPlan = getDocument(4, 'E').optAccountingPlan().get();
+        for (Account account : accountingPlan.accounts()) {
+            assertSame(account, accountingPlan.optAccountByNumber(account.number()).get());
+        }
+        assertEquals("3010", accountingPlan.optAccountByNumber(3010).get().number());
+        assertTrue(accountingPlan.optAccountByNumber("0000").isEmpty());
+        List<Account> expected = accountingPlan.accounts().stream()
+                .filter(account -> account.optNumberAsInteger().filter(n -> n >= 3000 && n <= 3999).isPresent())
+                .toList();
+        assertFalse(expected.isEmpty());
+        assertEquals(expected, accountingPlan.accountsBetween(3000, 3999));
+        assertTrue(accountingPlan.accountsBetween(3999, 3000).isEmpty());
+        assertThrows(UnsupportedOperationException.class, () -> accountingPlan.accounts().clear());
+    }
+
+    @Test
+    public void test_AccountingPlan_range_is_numerical() {
+        AccountingPlan accountingPlan = AccountingPlan.builder()
+                .accounts(List.of(Account.builder("30000").apply(), Account.builder("3010").apply(),
+                        Account.builder("ABC").apply(), Account.builder("399").apply(), Account.builder("4000").apply()))
+                .apply();
+        assertEquals(List.of("399", "3010", "4000"), accountingPlan.accountsBetween(0, 9999).stream().map(Account::number).toList());
+        assertEquals(List.of("30000"), accountingPlan.accountsBetween(10000, Long.MAX_VALUE).stream().map(Account::number).toList());
+    }
 }
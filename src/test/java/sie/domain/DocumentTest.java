@@ -1,7 +1,10 @@
 package sie.domain;
 
+import java.time.LocalDate;
+import java.util.List;
 import static org.junit.jupiter.api.Assertions.*;
 import org.junit.jupiter.api.Test;
+import sie.Sie4j;
 import sie.exception.*;
 
 /**
@@ -35,4 +38,38 @@ public class DocumentTest {
     public void test_document_type_getNumber() {
         assertTrue(Document.Type.I4.getNumber().equals(4));
     }
+
+    @Test
+    public void test_voucher_queries() {
+        Document document = Sie4j.fromSie(getClass().getResourceAsStream("/sample/BLBLOV_SIE4.SE"));
+        List<Voucher> vouchers = document.vouchers();
+        assertSame(vouchers, document.vouchers());
+        for (Voucher voucher : vouchers) {
+            assertSame(voucher, document.optVoucher(voucher.optSeries().orElse(null), voucher.optNumber().orElse(null)).get());
+        }
+        assertTrue(document.optVoucher("A", 100000).isEmpty());
+        LocalDate from = LocalDate.of(2017, 1, 1);
+        LocalDate to = LocalDate.of(2017, 1, 31);
+        List<Voucher> inJanuary = vouchers.stream()
+                .filter(voucher -> !voucher.date().isBefore(from) && !voucher.date().isAfter(to))
+                .toList();
+        assertFalse(inJanuary.isEmpty());
+        assertEquals(inJanuary.size(), document.vouchersBetween(from, to).size());
+        assertTrue(document.vouchersBetween(from, to).containsAll(inJanuary));
+        List<Transaction> postings = vouchers.stream()
+                .flatMap(voucher -> voucher.transactions().stream())
+                .filter(transaction -> transaction.accountNumber().equals("1930"))
+                .toList();
+        assertEquals(postings, document.transactionsByAccount("1930"));
+        List<Transaction> postingsInJanuary = postings.stream()
+                .filter(transaction -> !transaction.date().isBefore(from) && !transaction.date().isAfter(to))
+                .toList();
+        assertFalse(postingsInJanuary.isEmpty());
+        assertEquals(postingsInJanuary.size(), document.transactionsByAccount("1930", from, to).size());
+        assertTrue(document.transactionsByAccount("1930", from, to).containsAll(postingsInJanuary));
+        assertTrue(document.transactionsByAccount("0000").isEmpty());
+        assertThrows(NullPointerException.class, () -> document.vouchersBetween(null, to));
+        assertThrows(NullPointerException.class, () -> document.transactionsByAccount("1930", from, null));
+        assertThrows(UnsupportedOperationException.class, () -> vouchers.clear());
+    }
 }
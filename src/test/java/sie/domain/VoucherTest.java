@@ -57,6 +57,35 @@ public class VoucherTest extends Helper {
         assertEquals(new BigDecimal("0.00"), v2.diff());
     }
 
+    @Test
+    public void test_Voucher_getDiff_is_exact() {
+        Transaction t1 = Transaction.builder().accountNumber("1910").amount(new BigDecimal("90071992547409.93")).apply();
+        Transaction t2 = Transaction.builder().accountNumber("1910").amount(new BigDecimal("-90071992547409.92")).apply();
+        Voucher v1 = Voucher.builder().addTransaction(t1).addTransaction(t2).date(LocalDate.now()).number(21).series("A").apply();
+        assertEquals(9007199254740993L, t1.amountInHundredths());
+        assertEquals(1L, v1.diffInHundredths());
+        assertEquals(new BigDecimal("0.01"), v1.diff());
+        assertFalse(v1.balanced());
+        Transaction t3 = Transaction.builder().accountNumber("1910").amount(new BigDecimal("1E+20")).apply();
+        Transaction t4 = Transaction.builder().accountNumber("1910").amount(new BigDecimal("-1E+20")).apply();
+        Voucher v2 = Voucher.builder().addTransaction(t3).addTransaction(t4).date(LocalDate.now()).number(22).series("A").apply();
+        assertThrows(ArithmeticException.class, () -> t3.amountInHundredths());
+        assertTrue(v2.balanced());
+        assertEquals(new BigDecimal("0.00"), v2.diff());
+    }
+
+    @Test
+    public void test_Voucher_transactions_cannot_be_changed() {
+        Transaction t1 = Transaction.builder().accountNumber("1910").amount(new BigDecimal("10.00")).apply();
+        Voucher.Builder builder = Voucher.builder().addTransaction(t1).date(LocalDate.now()).number(21).series("A");
+        Voucher voucher = builder.apply();
+        builder.addTransaction(t1);
+        assertEquals(1, voucher.transactions().size());
+        assertSame(voucher.transactions(), voucher.transactions());
+        assertSame(voucher.transactions(), voucher.number(22).transactions());
+        assertThrows(UnsupportedOperationException.class, () -> voucher.transactions().add(t1));
+    }
+
     @Test
     public void test_Voucher() {
         List<Voucher> vouchers = getDocument(4, 'E').vouchers();
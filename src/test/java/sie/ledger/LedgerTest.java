@@ -0,0 +1,55 @@
+package sie.ledger;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+import sie.Helper;
+import sie.domain.*;
+import sie.domain.Account.ObjectId;
+
+/**
+ *
+ * @author Håkan Lidén
+ */
+public class LedgerTest extends Helper {
+
+    @Test
+    public void test_sums_by_account() {
+        Document document = getDocument(4, 'E');
+        Ledger ledger = Ledger.of(document);
+        List<Transaction> transactions = document.vouchers().stream()
+                .flatMap(voucher -> voucher.transactions().stream())
+                .toList();
+        assertFalse(ledger.accountNumbers().isEmpty());
+        ledger.accountNumbers().forEach(number -> {
+            List<Transaction> onAccount = transactions.stream()
+                    .filter(transaction -> transaction.accountNumber().equals(number))
+                    .toList();
+            BigDecimal expected = onAccount.stream().map(Transaction::amount).reduce(BigDecimal.ZERO, BigDecimal::add);
+            assertEquals(expected.setScale(2), ledger.sum(number));
+            assertEquals(onAccount.size(), ledger.count(number));
+        });
+        assertEquals(new BigDecimal("0.00"), ledger.sum("9999"));
+        assertEquals(0, ledger.count("9999"));
+    }
+
+    @Test
+    public void test_sums_by_object() {
+        ObjectId first = ObjectId.of(1, "100");
+        ObjectId second = ObjectId.of(1, "200");
+        Voucher voucher = Voucher.builder().series("A").number(1).date(LocalDate.of(2024, 1, 1))
+                .addTransaction(Transaction.builder().accountNumber("5010").amount(new BigDecimal("100.00")).addObjectId(first).apply())
+                .addTransaction(Transaction.builder().accountNumber("5010").amount(new BigDecimal("50.25")).addObjectId(second).apply())
+                .addTransaction(Transaction.builder().accountNumber("5010").amount(new BigDecimal("25.00")).addObjectId(first).apply())
+                .addTransaction(Transaction.builder().accountNumber("1930").amount(new BigDecimal("-175.25")).apply())
+                .apply();
+        Ledger ledger = Ledger.of(Document.builder().vouchers(List.of(voucher)).apply());
+        assertEquals(new BigDecimal("175.25"), ledger.sum("5010"));
+        assertEquals(new BigDecimal("125.00"), ledger.sum("5010", first));
+        assertEquals(new BigDecimal("50.25"), ledger.sum("5010", second));
+        assertEquals(new BigDecimal("0.00"), ledger.sum("1930", first));
+        assertEquals(new BigDecimal("-175.25"), ledger.sum("1930"));
+    }
+}
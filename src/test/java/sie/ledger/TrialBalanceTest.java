@@ -0,0 +1,110 @@
+package sie.ledger;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.List;
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+import sie.Helper;
+import sie.Sie4j;
+import sie.domain.*;
+import sie.ledger.TrialBalance.*;
+
+/**
+ *
+ * @author Håkan Lidén
+ */
+public class TrialBalanceTest extends Helper {
+
+    @Test
+    public void test_trial_balance_matches_ledger() {
+        Document document = getDocument(4, 'E');
+        TrialBalance trialBalance = TrialBalance.of(document);
+        Ledger ledger = Ledger.of(document);
+        assertFalse(trialBalance.accounts().isEmpty());
+        assertEquals(ledger.accountNumbers().size(), trialBalance.accounts().stream()
+                .filter(account -> ledger.count(account.accountNumber()) > 0)
+                .count());
+        for (AccountBalance account : trialBalance.accounts()) {
+            assertEquals(ledger.sum(account.accountNumber()), account.movement());
+            assertEquals(account.opening().add(account.movement()), account.closing());
+            assertEquals(12, account.periods().size());
+            assertEquals(account.opening(), account.periods().get(0).opening());
+            assertEquals(account.closing(), account.periods().get(11).closing());
+            assertEquals(account.movement(), account.periods().stream()
+                    .map(PeriodBalance::movement)
+                    .reduce(BigDecimal.ZERO, BigDecimal::add));
+        }
+    }
+
+    @Test
+    public void test_discrepancies() {
+        Document document = Sie4j.fromSie(getClass().getResourceAsStream("/sample/Arousells_Visning_AB.SE"));
+        TrialBalance trialBalance = TrialBalance.of(document);
+        assertFalse(trialBalance.consistent());
+        Discrepancy first = trialBalance.discrepancies().stream()
+                .filter(d -> d.accountNumber().equals("3001"))
+                .findFirst().get();
+        assertEquals("#RES", first.tag());
+        assertEquals(new BigDecimal("-25035.36"), first.given());
+        assertEquals(new BigDecimal("0.00"), first.calculated());
+        assertEquals("#RES 0 3001 -25035.36", first.line());
+    }
+
+    @Test
+    public void test_transactions_outside_the_year_are_left_out() {
+        Voucher misdated = Voucher.builder().series("A").number(1).date(LocalDate.of(1, 1, 1))
+                .addTransaction(Transaction.builder().accountNumber("1930").amount(new BigDecimal("-50.00")).apply())
+                .addTransaction(Transaction.builder().accountNumber("5010").amount(new BigDecimal("50.00")).apply())
+                .apply();
+        Document document = Document.builder()
+                .metaData(MetaData.builder().financialYears(List.of(FinancialYear.of(0, LocalDate.of(2024, 1, 1), LocalDate.of(2024, 12, 31)))).apply())
+                .vouchers(List.of(misdated))
+                .apply();
+        AccountBalance balance = TrialBalance.of(document).optAccount("1930").get();
+        assertEquals(12, balance.periods().size());
+        assertEquals(YearMonth.of(2024, 1), balance.periods().get(0).period());
+        assertEquals(new BigDecimal("0.00"), balance.periods().get(0).opening());
+        assertEquals(new BigDecimal("0.00"), balance.movement());
+        assertEquals(new BigDecimal("0.00"), balance.closing());
+        assertEquals(new BigDecimal("-50.00"), balance.outsideYear());
+    }
+
+    @Test
+    public void test_periodical_balances() {
+        Account bank = Account.builder("1930")
+                .addOpeningBalance(Balance.of(new BigDecimal("1000.00"), 0))
+                .addClosingBalance(Balance.of(new BigDecimal("700.00"), 0))
+                .addPeriodicalBalance(PeriodicalBalance.builder().yearIndex(0).period(YearMonth.of(2024, 2)).amount(new BigDecimal("-300.00")).apply())
+                .apply();
+        Account rent = Account.builder("5010")
+                .addResult(Balance.of(new BigDecimal("300.00"), 0))
+                .addPeriodicalBalance(PeriodicalBalance.builder().yearIndex(0).period(YearMonth.of(2024, 2)).amount(new BigDecimal("200.00")).apply())
+                .apply();
+        Voucher voucher = Voucher.builder().series("A").number(1).date(LocalDate.of(2024, 2, 1))
+                .addTransaction(Transaction.builder().accountNumber("5010").amount(new BigDecimal("300.00")).apply())
+                .addTransaction(Transaction.builder().accountNumber("1930").amount(new BigDecimal("-300.00")).apply())
+                .apply();
+        Document document = Document.builder()
+                .metaData(MetaData.builder().financialYears(List.of(FinancialYear.of(0, LocalDate.of(2024, 1, 1), LocalDate.of(2024, 12, 31)))).apply())
+                .accountingPlan(AccountingPlan.builder().accounts(List.of(bank, rent)).apply())
+                .vouchers(List.of(voucher))
+                .apply();
+        TrialBalance trialBalance = TrialBalance.of(document);
+        AccountBalance balance = trialBalance.optAccount("1930").get();
+        assertEquals(new BigDecimal("1000.00"), balance.opening());
+        assertEquals(new BigDecimal("700.00"), balance.closing());
+        PeriodBalance february = balance.optPeriod(YearMonth.of(2024, 2)).get();
+        assertEquals(new BigDecimal("1000.00"), february.opening());
+        assertEquals(new BigDecimal("-300.00"), february.movement());
+        assertEquals(new BigDecimal("700.00"), february.closing());
+        assertEquals(1, trialBalance.discrepancies().size());
+        Discrepancy discrepancy = trialBalance.discrepancies().get(0);
+        assertEquals("5010", discrepancy.accountNumber());
+        assertEquals("#PSALDO", discrepancy.tag());
+        assertEquals(YearMonth.of(2024, 2), discrepancy.period());
+        assertEquals(new BigDecimal("300.00"), discrepancy.calculated());
+        assertTrue(trialBalance.optAccount("2440").isEmpty());
+    }
+}